@@ -36,8 +36,23 @@
 -dontwarn retrofit2.**
 -keepattributes Signature, InnerClasses, EnclosingMethod
 
-# Kotlinx Serialization Factory specific
--keep class com.jakewharton.retrofit2.converter.kotlinx.serialization.** { *; }
+# StreamingJsonConverterFactory looks serializers up with serializer(type),
+# which reaches each API model's serializer through its Companion
+-if @kotlinx.serialization.Serializable class com.myshop.cafe.data.models.**
+-keepclassmembers class com.myshop.cafe.data.models.<1> {
+    static com.myshop.cafe.data.models.<1>$Companion Companion;
+}
+-if @kotlinx.serialization.Serializable class com.myshop.cafe.data.models.**
+-keepclassmembers class com.myshop.cafe.data.models.<1>$Companion {
+    kotlinx.serialization.KSerializer serializer(...);
+}
+
+# @EndpointTimeout is read from the ApiService method at runtime
+-keep @interface com.myshop.cafe.data.api.EndpointTimeout
+-keepclassmembers interface com.myshop.cafe.data.api.ApiService {
+    @com.myshop.cafe.data.api.EndpointTimeout <methods>;
+}
+-keepattributes RuntimeVisibleAnnotations
 
 # OkHttp
 -dontwarn okhttp3.**
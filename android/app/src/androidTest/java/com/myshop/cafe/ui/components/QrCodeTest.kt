@@ -0,0 +1,137 @@
+package com.myshop.cafe.ui.components
+
+import android.graphics.Bitmap
+import android.graphics.Color as AndroidColor
+import androidx.compose.foundation.background
+import androidx.compose.foundation.layout.Box
+import androidx.compose.foundation.layout.size
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.graphics.PixelMap
+import androidx.compose.ui.graphics.toArgb
+import androidx.compose.ui.graphics.toPixelMap
+import androidx.compose.ui.platform.LocalDensity
+import androidx.compose.ui.platform.testTag
+import androidx.compose.ui.test.captureToImage
+import androidx.compose.ui.test.junit4.createComposeRule
+import androidx.compose.ui.test.onNodeWithTag
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.google.zxing.BarcodeFormat
+import com.google.zxing.BinaryBitmap
+import com.google.zxing.MultiFormatWriter
+import com.google.zxing.RGBLuminanceSource
+import com.google.zxing.common.BitMatrix
+import com.google.zxing.common.HybridBinarizer
+import com.google.zxing.qrcode.QRCodeReader
+import com.myshop.cafe.data.models.Money
+import com.myshop.cafe.utils.KhqrUtil
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Screenshot regression for the canvas QR renderer: the captured pixels
+ * must reproduce the module matrix exactly, agree with the bitmap path it
+ * replaced and scan back to the payload.
+ */
+@RunWith(AndroidJUnit4::class)
+class QrCodeTest {
+
+    @get:Rule
+    val composeRule = createComposeRule()
+
+    private val payload = KhqrUtil.KhqrTemplate(
+        merchantName = "MY SHOP",
+        accountNumber = "lavin_mara@bkrt"
+    ).build(amount = Money(1250), billNumber = "CAFE12345678")
+
+    private val modules: BitMatrix = MultiFormatWriter().encode(payload, BarcodeFormat.QR_CODE, 0, 0)
+
+    private fun renderQrCode(cellPx: Int): PixelMap {
+        composeRule.setContent {
+            val side = with(LocalDensity.current) { (modules.width * cellPx).toDp() }
+            Box(
+                modifier = Modifier
+                    .size(side)
+                    .background(Color.White)
+                    .testTag(QR_TAG)
+            ) {
+                QrCode(modules = modules, modifier = Modifier.size(side))
+            }
+        }
+        return composeRule.onNodeWithTag(QR_TAG).captureToImage().toPixelMap()
+    }
+
+    @Test
+    fun everyModuleIsDrawnAtItsCell() {
+        val pixels = renderQrCode(CELL_PX)
+
+        assertEquals(modules.width * CELL_PX, pixels.width)
+        for (y in 0 until modules.height) {
+            for (x in 0 until modules.width) {
+                // Sample the centre of the cell so anti-aliased edges cannot flip the result
+                val pixel = pixels[x * CELL_PX + CELL_PX / 2, y * CELL_PX + CELL_PX / 2]
+                val expected = if (modules[x, y]) Color.Black else Color.White
+                assertEquals("module ($x, $y)", expected.toArgb(), pixel.toArgb())
+            }
+        }
+    }
+
+    /**
+     * The bitmap path QrCode replaced, as KhqrUtil.generateQrBitmap drew it:
+     * ZXing scales the matrix to [size] px and one pixel buffer fills an
+     * RGB_565 bitmap.
+     */
+    private fun referenceQrBitmap(content: String, size: Int): Bitmap {
+        val bitMatrix = MultiFormatWriter().encode(content, BarcodeFormat.QR_CODE, size, size)
+        val width = bitMatrix.width
+        val height = bitMatrix.height
+        val pixels = IntArray(width * height)
+        for (y in 0 until height) {
+            val offset = y * width
+            for (x in 0 until width) {
+                pixels[offset + x] = if (bitMatrix[x, y]) AndroidColor.BLACK else AndroidColor.WHITE
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565).apply {
+            setPixels(pixels, 0, width, 0, 0, width, height)
+        }
+    }
+
+    @Test
+    fun matchesBitmapPathModuleByModule() {
+        val reference = referenceQrBitmap(payload, modules.width * CELL_PX)
+        val pixels = renderQrCode(CELL_PX)
+
+        assertEquals(reference.width, pixels.width)
+        assertEquals(reference.height, pixels.height)
+        for (y in 0 until modules.height) {
+            for (x in 0 until modules.width) {
+                val cx = x * CELL_PX + CELL_PX / 2
+                val cy = y * CELL_PX + CELL_PX / 2
+                val referenceDark = AndroidColor.red(reference.getPixel(cx, cy)) < 128
+                val canvasDark = pixels[cx, cy].red < 0.5f
+                assertEquals("module ($x, $y)", referenceDark, canvasDark)
+            }
+        }
+    }
+
+    @Test
+    fun renderedCodeScansBackToPayload() {
+        val pixels = renderQrCode(CELL_PX)
+        val argb = IntArray(pixels.width * pixels.height) { index ->
+            pixels[index % pixels.width, index / pixels.width].toArgb()
+        }
+
+        val source = RGBLuminanceSource(pixels.width, pixels.height, argb)
+        val result = QRCodeReader().decode(BinaryBitmap(HybridBinarizer(source)))
+
+        assertEquals(payload, result.text)
+    }
+
+    private companion object {
+        const val QR_TAG = "qr"
+        const val CELL_PX = 4
+    }
+}
@@ -0,0 +1,146 @@
+package com.myshop.cafe.ui.screens.menu
+
+import androidx.compose.foundation.layout.Column
+import androidx.compose.foundation.lazy.LazyRow
+import androidx.compose.foundation.lazy.items
+import androidx.compose.material3.Text
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.SideEffect
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
+import androidx.compose.ui.test.junit4.createComposeRule
+import androidx.compose.ui.test.onNodeWithText
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.myshop.cafe.data.models.MenuItem
+import com.myshop.cafe.data.models.Money
+import kotlinx.collections.immutable.ImmutableList
+import kotlinx.collections.immutable.toImmutableList
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Toasts and cart totals change on every add to cart. Neither may
+ * recompose the product carousel or its cards, which only depend on the
+ * immutable menu models.
+ */
+@RunWith(AndroidJUnit4::class)
+class MenuRecompositionTest {
+
+    @get:Rule
+    val composeRule = createComposeRule()
+
+    private val items = (1..4).map { index ->
+        menuItemUi(id = "m$index", price = index + 0.5)
+    }.toImmutableList()
+
+    private var uiState by mutableStateOf(MenuUiState(isLoading = false, filteredItems = items))
+
+    @Before
+    fun resetCounts() {
+        Compositions.carousel.set(0)
+        Compositions.rows.clear()
+    }
+
+    private fun setMenuContent() {
+        composeRule.setContent {
+            // Remembered the same way MenuScreen remembers its callbacks
+            val onItemClick = remember { { _: MenuItem -> } }
+            val onQuickAdd = remember { { _: MenuItem -> } }
+            val state = uiState
+            val products = state.filteredItems
+
+            Column {
+                state.showToast?.let { Text(it) }
+                Text(state.cartTotal.format())
+                TrackedCarousel(items = products, onItemClick = onItemClick, onQuickAdd = onQuickAdd)
+                LazyRow {
+                    items(products, key = { it.id }, contentType = { "product" }) { product ->
+                        TrackedProductCard(product = product, onItemClick = onItemClick, onQuickAdd = onQuickAdd)
+                    }
+                }
+            }
+        }
+        composeRule.waitForIdle()
+    }
+
+    @Test
+    fun toastAndCartTotalDoNotRecomposeProductRows() {
+        setMenuContent()
+        val rowsBefore = HashMap(Compositions.rows)
+        assertEquals(1, Compositions.carousel.get())
+        assertTrue(rowsBefore.isNotEmpty())
+
+        uiState = uiState.copy(showToast = "Added Latte to cart")
+        composeRule.waitForIdle()
+        uiState = uiState.copy(cartTotal = Money(1250), cartItemCount = 3)
+        composeRule.waitForIdle()
+        uiState = uiState.copy(showToast = null)
+        composeRule.waitForIdle()
+
+        // The parent did recompose: the total it reads is on screen
+        composeRule.onNodeWithText("$12.50").assertExists()
+        assertEquals(1, Compositions.carousel.get())
+        assertEquals(rowsBefore, HashMap(Compositions.rows))
+    }
+
+    @Test
+    fun changedItemRecomposesOnlyItsRow() {
+        setMenuContent()
+        val rowsBefore = HashMap(Compositions.rows)
+
+        // Positive control: a real change to one item must reach the counters
+        uiState = uiState.copy(
+            filteredItems = items.map { if (it.id == "m2") menuItemUi(id = "m2", price = 9.0) else it }.toImmutableList()
+        )
+        composeRule.waitForIdle()
+
+        assertEquals(2, Compositions.carousel.get())
+        assertEquals(rowsBefore.getValue("m2") + 1, Compositions.rows.getValue("m2"))
+        for ((id, count) in rowsBefore) {
+            if (id != "m2") assertEquals(id, count, Compositions.rows.getValue(id))
+        }
+    }
+
+    private fun menuItemUi(id: String, price: Double) = MenuItemUi(
+        item = MenuItem(id = id, name = "Item $id", basePrice = price),
+        priceLabel = Money.ofDollars(price).format()
+    )
+}
+
+// Counters live outside the composables' parameters so the wrappers stay skippable
+private object Compositions {
+    val carousel = AtomicInteger()
+    val rows = ConcurrentHashMap<String, Int>()
+}
+
+@Composable
+private fun TrackedCarousel(
+    items: ImmutableList<MenuItemUi>,
+    onItemClick: (MenuItem) -> Unit,
+    onQuickAdd: (MenuItem) -> Unit
+) {
+    SideEffect { Compositions.carousel.incrementAndGet() }
+    ProductCarousel(items = items, onItemClick = onItemClick, onQuickAdd = onQuickAdd)
+}
+
+@Composable
+private fun TrackedProductCard(
+    product: MenuItemUi,
+    onItemClick: (MenuItem) -> Unit,
+    onQuickAdd: (MenuItem) -> Unit
+) {
+    SideEffect { Compositions.rows.merge(product.id, 1, Int::plus) }
+    ProductCard(
+        product = product,
+        onItemClick = { onItemClick(product.item) },
+        onQuickAdd = { onQuickAdd(product.item) }
+    )
+}
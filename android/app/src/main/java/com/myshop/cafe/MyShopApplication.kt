@@ -1,7 +1,32 @@
 package com.myshop.cafe
 
 import android.app.Application
+import coil.ImageLoader
+import coil.ImageLoaderFactory
+import com.myshop.cafe.data.repository.CartRepository
+import com.myshop.cafe.data.repository.OrderRepository
+import com.myshop.cafe.data.repository.UserRepository
 import dagger.hilt.android.HiltAndroidApp
+import javax.inject.Inject
 
 @HiltAndroidApp
-class MyShopApplication : Application()
+class MyShopApplication : Application(), ImageLoaderFactory {
+
+    // Created at startup so the session token is already in memory for the first request
+    @Inject
+    lateinit var userRepository: UserRepository
+
+    // Created at startup so the saved cart is read back before the menu opens
+    @Inject
+    lateinit var cartRepository: CartRepository
+
+    // Created at startup so paid orders still in the outbox are resent without opening checkout
+    @Inject
+    lateinit var orderRepository: OrderRepository
+
+    // Every AsyncImage resolves to this loader, so all screens share one set of caches
+    @Inject
+    lateinit var imageLoader: dagger.Lazy<ImageLoader>
+
+    override fun newImageLoader(): ImageLoader = imageLoader.get()
+}
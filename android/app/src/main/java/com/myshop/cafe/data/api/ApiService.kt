@@ -1,10 +1,14 @@
 package com.myshop.cafe.data.api
 
 import com.myshop.cafe.data.models.*
+import okhttp3.ResponseBody
+import retrofit2.Response
 import retrofit2.http.Body
 import retrofit2.http.GET
+import retrofit2.http.Header
 import retrofit2.http.POST
 import retrofit2.http.Query
+import retrofit2.http.Streaming
 
 interface ApiService {
     
@@ -15,18 +19,19 @@ interface ApiService {
     @POST("customer/otp-verify")
     suspend fun verifyOtp(@Body request: VerifyOtpRequest): AuthResponse
 
-    // Menu endpoints
-    @GET("cafe/menu-categories")
-    suspend fun getMenuCategories(): MenuCategoriesResponse
-    
-    @GET("cafe/menu-items")
-    suspend fun getMenuItems(
-        @Query("available_only") availableOnly: Boolean = true
-    ): MenuItemsResponse
+    // Nested menu, revalidated by the HTTP cache with its stored ETag. The body is left
+    // undecoded so a menu that did not change is never parsed again.
+    @Streaming
+    @GET("cafe/menu")
+    suspend fun getMenu(): Response<ResponseBody>
     
     // Customer order endpoints
+    @EndpointTimeout(read = 60, write = 30)
     @POST("customer/orders")
-    suspend fun createOrder(@Body request: CreateOrderRequest): CreateOrderResponse
+    suspend fun createOrder(
+        @Body request: CreateOrderRequest,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
+    ): CreateOrderResponse
     
     @GET("customer/orders")
     suspend fun getCustomerOrders(@Query("phone") phone: String): CustomerOrdersResponse
@@ -37,7 +42,25 @@ interface ApiService {
         @Query("status") status: String = "pending,preparing,ready",
         @Query("limit") limit: Int = 30
     ): OrdersQueueResponse
+    
+    // Server-sent order status transitions of one customer (the unscoped stream is staff-only)
+    @EndpointTimeout(read = 45)
+    @Streaming
+    @GET("cafe/orders/events")
+    suspend fun streamOrderEvents(
+        @Query("phone") phone: String,
+        @Header("Last-Event-ID") lastEventId: String? = null
+    ): ResponseBody
 
+    @EndpointTimeout(read = 10)
     @POST("sales/verify-khqr")
     suspend fun verifyKhqr(@Body request: VerifyKhqrRequest): VerifyKhqrResponse
+    
+    // Long-poll, returns as soon as the payment lands or after timeout ms with pending = true
+    @EndpointTimeout(read = 35)
+    @GET("sales/verify-khqr/wait")
+    suspend fun awaitKhqrPayment(
+        @Query("md5") md5: String,
+        @Query("timeout") timeoutMs: Long = 25_000
+    ): VerifyKhqrResponse
 }
@@ -0,0 +1,13 @@
+package com.myshop.cafe.data.api
+
+/**
+ * Overrides the client's default timeouts for a single ApiService method.
+ * Values are in seconds, zero keeps the default.
+ */
+@Target(AnnotationTarget.FUNCTION)
+@Retention(AnnotationRetention.RUNTIME)
+annotation class EndpointTimeout(
+    val connect: Int = 0,
+    val read: Int = 0,
+    val write: Int = 0
+)
@@ -0,0 +1,50 @@
+package com.myshop.cafe.data.api
+
+import android.content.Context
+import coil.ImageLoader
+import coil.disk.DiskCache
+import coil.memory.MemoryCache
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.android.qualifiers.ApplicationContext
+import dagger.hilt.components.SingletonComponent
+import okhttp3.OkHttpClient
+import java.util.concurrent.TimeUnit
+import javax.inject.Singleton
+
+@Module
+@InstallIn(SingletonComponent::class)
+object ImageModule {
+    
+    private const val IMAGE_DISK_CACHE_SIZE = 64L * 1024 * 1024
+    private const val IMAGE_MEMORY_CACHE_PERCENT = 0.2
+    
+    @Provides
+    @Singleton
+    fun provideImageLoader(@ApplicationContext context: Context): ImageLoader {
+        return ImageLoader.Builder(context)
+            .memoryCache {
+                MemoryCache.Builder(context)
+                    .maxSizePercent(IMAGE_MEMORY_CACHE_PERCENT)
+                    .build()
+            }
+            .diskCache {
+                DiskCache.Builder()
+                    .directory(context.cacheDir.resolve("image_cache"))
+                    .maxSizeBytes(IMAGE_DISK_CACHE_SIZE)
+                    .build()
+            }
+            // Image hosts are separate from the API, so no auth header or API cache here
+            .okHttpClient {
+                OkHttpClient.Builder()
+                    .connectTimeout(15, TimeUnit.SECONDS)
+                    .readTimeout(20, TimeUnit.SECONDS)
+                    .build()
+            }
+            // Thumbnails are opaque photos, half the memory per pixel is plenty
+            .allowRgb565(true)
+            .crossfade(true)
+            .build()
+    }
+}
@@ -1,19 +1,24 @@
 package com.myshop.cafe.data.api
 
-import com.jakewharton.retrofit2.converter.kotlinx.serialization.asConverterFactory
+import android.content.Context
 import com.myshop.cafe.BuildConfig
 import com.myshop.cafe.data.repository.UserRepository
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
+import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.components.SingletonComponent
-import kotlinx.coroutines.flow.first
-import kotlinx.coroutines.runBlocking
 import kotlinx.serialization.json.Json
+import okhttp3.Cache
+import okhttp3.ConnectionPool
+import okhttp3.Interceptor
 import okhttp3.MediaType.Companion.toMediaType
 import okhttp3.OkHttpClient
+import okhttp3.Protocol
 import okhttp3.logging.HttpLoggingInterceptor
+import retrofit2.Invocation
 import retrofit2.Retrofit
+import java.io.File
 import java.util.concurrent.TimeUnit
 import javax.inject.Singleton
 
@@ -28,20 +33,44 @@ object NetworkModule {
         allowSpecialFloatingPointValues = true
     }
     
+    private const val HTTP_CACHE_SIZE = 10L * 1024 * 1024
+    
+    // Applies @EndpointTimeout declared on the ApiService method behind the call
+    private val endpointTimeoutInterceptor = Interceptor { chain ->
+        val timeout = chain.request().tag(Invocation::class.java)
+            ?.method()
+            ?.getAnnotation(EndpointTimeout::class.java)
+            ?: return@Interceptor chain.proceed(chain.request())
+        
+        var timedChain = chain
+        if (timeout.connect > 0) timedChain = timedChain.withConnectTimeout(timeout.connect, TimeUnit.SECONDS)
+        if (timeout.read > 0) timedChain = timedChain.withReadTimeout(timeout.read, TimeUnit.SECONDS)
+        if (timeout.write > 0) timedChain = timedChain.withWriteTimeout(timeout.write, TimeUnit.SECONDS)
+        timedChain.proceed(chain.request())
+    }
+    
     @Provides
     @Singleton
-    fun provideOkHttpClient(userRepository: UserRepository): OkHttpClient {
+    fun provideOkHttpClient(
+        @ApplicationContext context: Context,
+        userRepository: UserRepository
+    ): OkHttpClient {
         return OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(30, TimeUnit.SECONDS)
+            .cache(Cache(File(context.cacheDir, "http_cache"), HTTP_CACHE_SIZE))
+            // Keep connections warm across polling and event stream reconnects
+            .connectionPool(ConnectionPool(5, 5, TimeUnit.MINUTES))
+            .protocols(listOf(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(15, TimeUnit.SECONDS)
+            .readTimeout(20, TimeUnit.SECONDS)
+            .writeTimeout(20, TimeUnit.SECONDS)
+            .addInterceptor(endpointTimeoutInterceptor)
             .addInterceptor { chain ->
                 val request = chain.request()
-                val session = runBlocking { userRepository.userSession.first() }
+                val token = userRepository.currentToken
                 
-                val newRequest = if (session.token != null) {
+                val newRequest = if (token != null) {
                     request.newBuilder()
-                        .header("Authorization", "Bearer ${session.token}")
+                        .header("Authorization", "Bearer $token")
                         .build()
                 } else {
                     request
@@ -66,7 +95,7 @@ object NetworkModule {
         return Retrofit.Builder()
             .baseUrl(BuildConfig.BASE_URL)
             .client(okHttpClient)
-            .addConverterFactory(json.asConverterFactory("application/json".toMediaType()))
+            .addConverterFactory(StreamingJsonConverterFactory(json, "application/json".toMediaType()))
             .build()
     }
     
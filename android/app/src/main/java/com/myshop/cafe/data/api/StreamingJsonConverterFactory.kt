@@ -0,0 +1,48 @@
+package com.myshop.cafe.data.api
+
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.decodeFromStream
+import kotlinx.serialization.serializer
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+
+/**
+ * Retrofit converter that decodes responses straight from the OkHttp body
+ * stream instead of buffering the whole payload into a String first, which
+ * keeps large menu and order responses from doubling their peak memory.
+ */
+@OptIn(ExperimentalSerializationApi::class)
+class StreamingJsonConverterFactory(
+    private val json: Json,
+    private val contentType: MediaType
+) : Converter.Factory() {
+    
+    override fun responseBodyConverter(
+        type: Type,
+        annotations: Array<out Annotation>,
+        retrofit: Retrofit
+    ): Converter<ResponseBody, *> {
+        val deserializer = json.serializersModule.serializer(type)
+        return Converter<ResponseBody, Any?> { body ->
+            body.use { json.decodeFromStream(deserializer, it.byteStream()) }
+        }
+    }
+    
+    override fun requestBodyConverter(
+        type: Type,
+        parameterAnnotations: Array<out Annotation>,
+        methodAnnotations: Array<out Annotation>,
+        retrofit: Retrofit
+    ): Converter<*, RequestBody> {
+        val serializer = json.serializersModule.serializer(type)
+        return Converter<Any?, RequestBody> { value ->
+            json.encodeToString(serializer, value).toRequestBody(contentType)
+        }
+    }
+}
@@ -1,22 +1,78 @@
 package com.myshop.cafe.data.models
 
-import java.util.UUID
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.Transient
 
+@Serializable
 data class CartItem(
-    val id: String = UUID.randomUUID().toString(),
     val menuItem: MenuItem,
     val size: Size = Size.SMALL,
+    val id: String = keyOf(menuItem.id, size),
     val quantity: Int = 1
 ) {
-    val unitPrice: Double
-        get() = when (size) {
-            Size.SMALL -> menuItem.basePrice
-            Size.MEDIUM -> menuItem.priceMedium ?: (menuItem.basePrice + 0.50)
-            Size.LARGE -> menuItem.priceLarge ?: (menuItem.basePrice + 1.00)
-        }
+    // Resolved once per instance instead of on every read
+    @Transient
+    val unitPrice: Money = menuItem.priceFor(size)
     
-    val totalPrice: Double
+    val totalPrice: Money
         get() = unitPrice * quantity
+    
+    companion object {
+        /**
+         * Identity of a cart line: the same product in the same size always
+         * lands on one line. The app has no modifiers yet; they belong here
+         * once it does.
+         */
+        fun keyOf(menuItemId: String, size: Size): String = "$menuItemId:${size.apiValue}"
+    }
+}
+
+/**
+ * Everything the screens show about the cart, derived once per change
+ */
+data class CartSummary(
+    val items: List<CartItem> = emptyList(),
+    val itemCount: Int = 0,
+    val subtotal: Money = Money.ZERO
+)
+
+/**
+ * Price of one item in the given size. Sizes without their own price add
+ * $0.50 for medium and $1.00 for large, the same as the server.
+ */
+fun MenuItem.priceFor(size: Size): Money = when (size) {
+    Size.SMALL -> Money.ofDollars(basePrice)
+    Size.MEDIUM -> priceMedium?.let { Money.ofDollars(it) } ?: (Money.ofDollars(basePrice) + Money(50))
+    Size.LARGE -> priceLarge?.let { Money.ofDollars(it) } ?: (Money.ofDollars(basePrice) + Money(100))
+}
+
+@Serializable
+data class CartSnapshot(
+    val savedAt: Long,
+    val items: List<CartItem>,
+    val pendingPayment: PendingPayment? = null
+)
+
+/**
+ * A KHQR payment shown to the customer whose order is not placed yet.
+ * Journaled with the cart, so a payment made while the process was killed
+ * in the banking app still turns into its order when the app comes back.
+ */
+@Serializable
+data class PendingPayment(
+    val md5: String,
+    val payload: String,
+    val amountCents: Long,
+    val billNumber: String,
+    val orderKey: String,
+    val customerPhone: String,
+    val customerName: String? = null,
+    val orderType: OrderType = OrderType.TAKEAWAY,
+    val tableNumber: String = "",
+    val deepLinkUrl: String? = null
+) {
+    val amount: Money
+        get() = Money(amountCents)
 }
 
 enum class Size(val label: String, val apiValue: String) {
@@ -49,8 +49,7 @@ data class MenuCategoriesResponse(
 )
 
 @Serializable
-data class MenuItemsResponse(
-    val success: Boolean,
-    val data: List<MenuItem>? = null,
-    val message: String? = null
+data class MenuSnapshot(
+    val savedAt: Long,
+    val categories: List<MenuCategory>
 )
@@ -0,0 +1,75 @@
+package com.myshop.cafe.data.models
+
+/**
+ * A USD amount held as whole cents. Sums and products stay exact, and the
+ * KHR conversions round the same way as backend currency.util.js.
+ */
+@JvmInline
+value class Money(val cents: Long) : Comparable<Money> {
+
+    operator fun plus(other: Money) = Money(cents + other.cents)
+
+    operator fun minus(other: Money) = Money(cents - other.cents)
+
+    operator fun times(quantity: Int) = Money(cents * quantity)
+
+    override fun compareTo(other: Money) = cents.compareTo(other.cents)
+
+    val isPositive: Boolean get() = cents > 0
+
+    /**
+     * Riel equivalent, like usdToKhr: Math.round(usd * rate)
+     */
+    fun toKhr(rate: Long = DEFAULT_EXCHANGE_RATE): Long = Math.floorDiv(cents * rate + 50, 100)
+
+    /**
+     * Two-decimal amount without a currency sign, e.g. "12.50", the form
+     * KHQR tag 54 and the API expect. [groupThousands] gives "1,250.00".
+     */
+    fun toPlainString(groupThousands: Boolean = false): String {
+        val absolute = Math.abs(cents)
+        val fraction = (absolute % 100).toInt()
+        val whole = (absolute / 100).toString()
+        return buildString(16) {
+            if (cents < 0) append('-')
+            if (groupThousands) {
+                whole.forEachIndexed { index, digit ->
+                    if (index > 0 && (whole.length - index) % 3 == 0) append(',')
+                    append(digit)
+                }
+            } else {
+                append(whole)
+            }
+            append('.')
+            if (fraction < 10) append('0')
+            append(fraction)
+        }
+    }
+
+    /**
+     * Display form used across the app, e.g. "$12.50"
+     */
+    fun format(): String = "$" + toPlainString()
+
+    override fun toString() = format()
+
+    companion object {
+        val ZERO = Money(0)
+
+        // Matches DEFAULT_EXCHANGE_RATE in backend/src/utils/currency.util.js
+        const val DEFAULT_EXCHANGE_RATE = 4100L
+
+        /**
+         * From a dollar amount as sent by the API: Math.round(amount * 100),
+         * the same cents khqr.util.ts encodes, so both builders agree even
+         * for amounts between cents.
+         */
+        fun ofDollars(amount: Double) = Money(Math.round(amount * 100))
+
+        /**
+         * From riel, like khrToUsd: (khr / rate) rounded half up to cents
+         */
+        fun ofKhr(khr: Long, rate: Long = DEFAULT_EXCHANGE_RATE) =
+            Money(Math.floorDiv(khr * 200 + rate, 2 * rate))
+    }
+}
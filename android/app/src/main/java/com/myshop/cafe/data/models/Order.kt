@@ -63,6 +63,28 @@ data class CreateOrderItem(
     val customizations: Map<String, String>? = null
 )
 
+/**
+ * An order waiting in the device outbox. The key travels as the
+ * Idempotency-Key header, so however often it is resent the server
+ * creates the order once.
+ */
+@Serializable
+data class PendingOrder(
+    val idempotencyKey: String,
+    val request: CreateOrderRequest,
+    val queuedAt: Long
+)
+
+/**
+ * What placing an order led to within the wait the checkout allows:
+ * the server's acknowledged order, or the order still sitting in the
+ * device outbox, which keeps resending it on its own.
+ */
+sealed interface OrderSubmission {
+    data class Placed(val order: Order) : OrderSubmission
+    data object Queued : OrderSubmission
+}
+
 @Serializable
 data class CreateOrderResponse(
     val success: Boolean,
@@ -90,6 +112,16 @@ data class OrdersQueueResponse(
     val message: String? = null
 )
 
+@Serializable
+data class OrderEvent(
+    val id: String,
+    @SerialName("order_number")
+    val orderNumber: String,
+    val status: String,
+    @SerialName("updated_at")
+    val updatedAt: String? = null
+)
+
 @Serializable
 data class VerifyKhqrRequest(
     val md5: String
@@ -98,6 +130,7 @@ data class VerifyKhqrRequest(
 @Serializable
 data class VerifyKhqrResponse(
     val success: Boolean,
+    val pending: Boolean = false,
     val message: String? = null,
     val data: VerifyKhqrData? = null
 )
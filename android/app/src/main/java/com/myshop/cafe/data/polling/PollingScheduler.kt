@@ -0,0 +1,83 @@
+package com.myshop.cafe.data.polling
+
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.ProcessLifecycleOwner
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.random.Random
+
+/**
+ * Runs the app's repeating network work. Failures back off exponentially
+ * with jitter, loops pause while the app is in the background, and
+ * identical requests that overlap share one call.
+ */
+@Singleton
+class PollingScheduler @Inject constructor() {
+    
+    private val singleFlight = SingleFlight()
+    
+    private val isAppInForeground: Flow<Boolean> = ProcessLifecycleOwner.get().lifecycle.currentStateFlow
+        .map { it.isAtLeast(Lifecycle.State.STARTED) }
+        .distinctUntilChanged()
+    
+    suspend fun awaitForeground() {
+        isAppInForeground.first { it }
+    }
+    
+    /**
+     * Collects upstream only while the app is visible. It is cancelled when
+     * the app goes to the background and collected again on return.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    fun <T> whileInForeground(upstream: Flow<T>): Flow<T> =
+        isAppInForeground.flatMapLatest { visible -> if (visible) upstream else emptyFlow() }
+    
+    /**
+     * Calls fetch every intervalMs and emits each successful result.
+     * Callers polling with the same key at the same moment share one request.
+     */
+    fun <T> poll(
+        key: String,
+        intervalMs: Long,
+        pauseInBackground: Boolean = true,
+        fetch: suspend () -> Result<T>
+    ): Flow<T> = flow {
+        var failures = 0
+        while (true) {
+            if (pauseInBackground) awaitForeground()
+            
+            singleFlight.run(key, fetch)
+                .onSuccess {
+                    failures = 0
+                    emit(it)
+                }
+                .onFailure { failures++ }
+            
+            delay(backoffDelay(intervalMs, failures))
+        }
+    }
+    
+    fun backoffDelay(baseMs: Long, failures: Int): Long {
+        if (failures == 0) return baseMs
+        
+        val window = (maxOf(baseMs, MIN_BACKOFF_MS) shl minOf(failures, MAX_DOUBLINGS))
+            .coerceAtMost(MAX_BACKOFF_MS)
+        // Jitter within the upper half of the window so phones do not retry in lockstep
+        return window / 2 + Random.nextLong(window / 2 + 1)
+    }
+    
+    private companion object {
+        const val MIN_BACKOFF_MS = 1_000L
+        const val MAX_BACKOFF_MS = 30_000L
+        const val MAX_DOUBLINGS = 6
+    }
+}
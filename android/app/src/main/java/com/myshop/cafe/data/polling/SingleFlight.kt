@@ -0,0 +1,35 @@
+package com.myshop.cafe.data.polling
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+
+/**
+ * Collapses concurrent calls with the same key into a single in-flight
+ * request. Every caller awaits the same Deferred and gets the same result.
+ */
+class SingleFlight(
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+) {
+    private val inFlight = HashMap<String, Deferred<Any?>>()
+    
+    suspend fun <T> run(key: String, block: suspend () -> T): T {
+        val deferred = synchronized(inFlight) {
+            inFlight[key] ?: scope.async(start = CoroutineStart.LAZY) { block() }.also { created ->
+                inFlight[key] = created
+                created.invokeOnCompletion {
+                    synchronized(inFlight) {
+                        if (inFlight[key] === created) inFlight.remove(key)
+                    }
+                }
+            }
+        }
+        deferred.start()
+        
+        @Suppress("UNCHECKED_CAST")
+        return deferred.await() as T
+    }
+}
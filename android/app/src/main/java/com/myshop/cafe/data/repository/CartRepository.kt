@@ -1,66 +1,295 @@
 package com.myshop.cafe.data.repository
 
+import android.content.Context
 import com.myshop.cafe.data.models.CartItem
+import com.myshop.cafe.data.models.CartSnapshot
+import com.myshop.cafe.data.models.CartSummary
 import com.myshop.cafe.data.models.MenuItem
+import com.myshop.cafe.data.models.Money
+import com.myshop.cafe.data.models.PendingPayment
 import com.myshop.cafe.data.models.Size
+import com.myshop.cafe.data.models.priceFor
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
-import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
+import kotlinx.collections.immutable.PersistentMap
+import kotlinx.collections.immutable.persistentMapOf
+import kotlinx.serialization.decodeFromString
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import java.io.File
+import java.io.FileOutputStream
+import java.io.RandomAccessFile
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
-class CartRepository @Inject constructor() {
+class CartRepository @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
     
-    private val _cartItems = MutableStateFlow<List<CartItem>>(emptyList())
-    val cartItems: StateFlow<List<CartItem>> = _cartItems.asStateFlow()
+    /**
+     * Cart lines keyed by [CartItem.keyOf] in insertion order, with the
+     * count and subtotal kept up to date by each change instead of rescanned,
+     * plus the KHQR payment awaiting its order, if any.
+     */
+    private data class CartState(
+        val lines: PersistentMap<String, CartItem> = persistentMapOf(),
+        val itemCount: Int = 0,
+        val subtotal: Money = Money.ZERO,
+        val pendingPayment: PendingPayment? = null
+    ) {
+        fun put(item: CartItem): CartState {
+            val previous = lines[item.id]
+            val quantityDelta = item.quantity - (previous?.quantity ?: 0)
+            return copy(
+                lines = lines.put(item.id, item),
+                itemCount = itemCount + quantityDelta,
+                subtotal = subtotal - (previous?.totalPrice ?: Money.ZERO) + item.totalPrice
+            )
+        }
+        
+        fun remove(id: String): CartState {
+            val previous = lines[id] ?: return this
+            return copy(
+                lines = lines.remove(id),
+                itemCount = itemCount - previous.quantity,
+                subtotal = subtotal - previous.totalPrice
+            )
+        }
+        
+        fun toSummary() = CartSummary(
+            items = lines.values.toList(),
+            itemCount = itemCount,
+            subtotal = subtotal
+        )
+    }
     
-    val totalPrice: Double
-        get() = _cartItems.value.sumOf { it.totalPrice }
+    private var state = CartState()
     
-    val itemCount: Int
-        get() = _cartItems.value.sumOf { it.quantity }
+    private val _summary = MutableStateFlow(CartSummary())
     
-    fun addItem(menuItem: MenuItem, size: Size = Size.SMALL) {
-        _cartItems.update { currentItems ->
-            val existingIndex = currentItems.indexOfFirst { 
-                it.menuItem.id == menuItem.id && it.size == size 
+    /** Items, count and subtotal in one flow shared by the menu, cart and checkout screens */
+    val summary: StateFlow<CartSummary> = _summary.asStateFlow()
+    
+    private val _pendingPayment = MutableStateFlow<PendingPayment?>(null)
+    
+    /** The KHQR payment whose order is not placed yet, restored with the cart after process death */
+    val pendingPayment: StateFlow<PendingPayment?> = _pendingPayment.asStateFlow()
+    
+    private val journalJson = Json {
+        ignoreUnknownKeys = true
+        coerceInputValues = true
+    }
+    
+    private val journalFile: File
+        get() = File(context.filesDir, JOURNAL_FILE_NAME)
+    
+    private val cartScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    
+    // Conflated: while one write is in flight, later changes collapse into the newest cart
+    private val pendingWrites = Channel<CartSnapshot>(Channel.CONFLATED)
+    
+    private var journalEntries = 0
+    
+    // Completed once the journal has been read back
+    private val restored = CompletableDeferred<Unit>()
+    
+    init {
+        cartScope.launch {
+            try {
+                restore()
+            } finally {
+                restored.complete(Unit)
             }
-            
-            if (existingIndex >= 0) {
-                currentItems.toMutableList().apply {
-                    val existing = this[existingIndex]
-                    this[existingIndex] = existing.copy(quantity = existing.quantity + 1)
-                }
-            } else {
-                currentItems + CartItem(menuItem = menuItem, size = size)
+            for (snapshot in pendingWrites) {
+                appendToJournal(snapshot)
             }
         }
     }
     
+    val totalPrice: Money
+        get() = _summary.value.subtotal
+    
+    val itemCount: Int
+        get() = _summary.value.itemCount
+    
+    fun addItem(menuItem: MenuItem, size: Size = Size.SMALL) {
+        mutate { current ->
+            val existing = current.lines[CartItem.keyOf(menuItem.id, size)]
+            current.put(existing?.copy(quantity = existing.quantity + 1) ?: CartItem(menuItem = menuItem, size = size))
+        }
+    }
+    
     fun updateQuantity(cartItemId: String, delta: Int) {
-        _cartItems.update { currentItems ->
-            currentItems.mapNotNull { item ->
-                if (item.id == cartItemId) {
-                    val newQuantity = item.quantity + delta
-                    if (newQuantity <= 0) null else item.copy(quantity = newQuantity)
-                } else {
-                    item
+        mutate { current ->
+            val item = current.lines[cartItemId] ?: return@mutate current
+            val newQuantity = item.quantity + delta
+            if (newQuantity <= 0) current.remove(cartItemId) else current.put(item.copy(quantity = newQuantity))
+        }
+    }
+    
+    fun removeItem(cartItemId: String) {
+        mutate { current -> current.remove(cartItemId) }
+    }
+    
+    /** Clears the lines and any pending payment, once the order is placed */
+    fun clearCart() {
+        mutate { CartState() }
+    }
+    
+    /**
+     * Clears the cart once the order paid for by its pending payment is
+     * acknowledged, even after the checkout that placed it is gone. A cart
+     * that moved on to another payment is left alone.
+     */
+    suspend fun clearOrdered(orderKey: String) {
+        // An order acknowledged right after launch must not race the cart coming back from disk
+        restored.await()
+        mutate { current ->
+            if (current.pendingPayment?.orderKey == orderKey) CartState() else current
+        }
+    }
+    
+    /**
+     * Records the payment shown to the customer, or clears it with null.
+     * It goes through the same journal as the lines, so a restored cart
+     * comes back with the payment it was being paid by.
+     */
+    fun setPendingPayment(payment: PendingPayment?) {
+        mutate { current ->
+            if (current.pendingPayment == payment) current else current.copy(pendingPayment = payment)
+        }
+    }
+    
+    /**
+     * Brings every line up to the current menu before it is paid for. Lines
+     * restored from the journal still carry the item as it was when it was
+     * added, so its price may be stale; lines whose item left the menu or is
+     * unavailable are dropped. Returns whether the cart changed.
+     */
+    fun reprice(menu: List<MenuItem>): Boolean {
+        val current = menu.associateBy { it.id }
+        var changed = false
+        mutate { cart ->
+            cart.lines.values.fold(cart) { next, line ->
+                val item = current[line.menuItem.id]
+                when {
+                    item == null || !item.isAvailable -> next.remove(line.id)
+                    item.priceFor(line.size) == line.unitPrice -> next
+                    else -> next.put(line.copy(menuItem = item))
                 }
+            }.also { changed = it !== cart }
+        }
+        return changed
+    }
+    
+    fun getItems(): List<CartItem> = _summary.value.items
+    
+    private fun mutate(transform: (CartState) -> CartState) {
+        synchronized(this) {
+            val next = transform(state)
+            if (next === state) return
+            state = next
+            val summary = next.toSummary()
+            _summary.value = summary
+            _pendingPayment.value = next.pendingPayment
+            // Queued under the lock, so the journal never receives two changes out of order
+            pendingWrites.trySend(CartSnapshot(System.currentTimeMillis(), summary.items, next.pendingPayment))
+        }
+    }
+    
+    /**
+     * Loads the cart saved before the process was last killed. Anything
+     * added in the meantime is merged on top of the restored lines.
+     */
+    private fun restore() {
+        val restored = readJournal() ?: return
+        if (restored.items.isEmpty() && restored.pendingPayment == null) return
+        
+        mutate { current ->
+            // Re-key while loading: journals written before keyed lines used random ids
+            val restoredCart = CartState(pendingPayment = current.pendingPayment ?: restored.pendingPayment)
+            val merged = restored.items.fold(restoredCart) { cart, item ->
+                val line = item.copy(id = CartItem.keyOf(item.menuItem.id, item.size))
+                val existing = cart.lines[line.id]
+                cart.put(existing?.copy(quantity = existing.quantity + line.quantity) ?: line)
+            }
+            current.lines.values.fold(merged) { cart, item ->
+                val existing = cart.lines[item.id]
+                cart.put(existing?.copy(quantity = existing.quantity + item.quantity) ?: item)
             }
         }
     }
     
-    fun removeItem(cartItemId: String) {
-        _cartItems.update { currentItems ->
-            currentItems.filter { it.id != cartItemId }
+    private fun readJournal(): CartSnapshot? {
+        return try {
+            val file = journalFile
+            if (!file.exists()) return null
+            
+            val bytes = file.readBytes()
+            val complete = bytes.lastIndexOf('\n'.code.toByte()) + 1
+            if (complete < bytes.size) {
+                // A crash mid-append left a line without its newline. Cut it off, or the
+                // next entry would be appended onto it and be unreadable too.
+                RandomAccessFile(file, "rw").use { it.setLength(complete.toLong()) }
+            }
+            
+            // The newest complete entry wins; a line that fails to decode is skipped
+            val lines = String(bytes, 0, complete, Charsets.UTF_8).lines().filter { it.isNotEmpty() }
+            journalEntries = lines.size
+            lines.asReversed().firstNotNullOfOrNull { line ->
+                runCatching { journalJson.decodeFromString<CartSnapshot>(line) }.getOrNull()
+            }
+        } catch (e: Exception) {
+            e.printStackTrace()
+            null
         }
     }
     
-    fun clearCart() {
-        _cartItems.value = emptyList()
+    private fun appendToJournal(snapshot: CartSnapshot) {
+        val line = journalJson.encodeToString(snapshot)
+        
+        try {
+            if (journalEntries >= MAX_JOURNAL_ENTRIES) {
+                compactJournal(line)
+                return
+            }
+            
+            FileOutputStream(journalFile, true).use { output ->
+                output.write("$line\n".toByteArray())
+                // Reach the disk before returning, the app may be killed while in the banking app
+                output.fd.sync()
+            }
+            journalEntries++
+        } catch (e: Exception) {
+            e.printStackTrace()
+        }
     }
     
-    fun getItems(): List<CartItem> = _cartItems.value
+    private fun compactJournal(line: String) {
+        // Write to a temp file and rename so a crash never leaves the journal without an entry
+        val tempFile = File(context.filesDir, "$JOURNAL_FILE_NAME.tmp")
+        FileOutputStream(tempFile).use { output ->
+            output.write("$line\n".toByteArray())
+            output.fd.sync()
+        }
+        if (tempFile.renameTo(journalFile)) {
+            journalEntries = 1
+        } else {
+            tempFile.delete()
+        }
+    }
+    
+    private companion object {
+        const val JOURNAL_FILE_NAME = "cart_journal.jsonl"
+        const val MAX_JOURNAL_ENTRIES = 64
+    }
 }
@@ -1,64 +1,125 @@
 package com.myshop.cafe.data.repository
 
+import android.content.Context
 import com.myshop.cafe.data.api.ApiService
+import com.myshop.cafe.data.models.MenuCategoriesResponse
 import com.myshop.cafe.data.models.MenuCategory
-import com.myshop.cafe.data.models.MenuItem
+import com.myshop.cafe.data.models.MenuSnapshot
+import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import kotlinx.serialization.decodeFromString
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.io.File
+import java.net.HttpURLConnection
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
 class MenuRepository @Inject constructor(
-    private val apiService: ApiService
+    @ApplicationContext private val context: Context,
+    private val apiService: ApiService,
+    retrofit: Retrofit
 ) {
     
-    suspend fun getCategories(): Result<List<MenuCategory>> = withContext(Dispatchers.IO) {
+    // The app's JSON converter, applied only to menu bodies that changed
+    private val menuConverter: Converter<ResponseBody, MenuCategoriesResponse> =
+        retrofit.responseBodyConverter(MenuCategoriesResponse::class.java, emptyArray())
+    
+    private val snapshotJson = Json {
+        ignoreUnknownKeys = true
+        coerceInputValues = true
+    }
+    
+    private val snapshotFile: File
+        get() = File(context.filesDir, SNAPSHOT_FILE_NAME)
+    
+    @Volatile
+    private var memorySnapshot: MenuSnapshot? = null
+    
+    /**
+     * Loads the nested menu from the combined endpoint. The HTTP cache serves
+     * it from disk while fresh and revalidates with its ETag afterwards; when
+     * nothing changed the stored snapshot is returned and the body is closed
+     * without being decoded.
+     */
+    suspend fun getCategoriesWithItems(): Result<List<MenuCategory>> = withContext(Dispatchers.IO) {
         try {
-            val response = apiService.getMenuCategories()
-            if (response.success) {
-                Result.success(response.data ?: emptyList())
-            } else {
-                Result.failure(Exception(response.message ?: "Failed to load categories"))
+            val cached = readSnapshot()
+            val response = apiService.getMenu()
+            
+            response.body().use { body ->
+                val networkResponse = response.raw().networkResponse
+                val unchanged = networkResponse == null || networkResponse.code == HttpURLConnection.HTTP_NOT_MODIFIED
+                if (cached != null && response.isSuccessful && unchanged) {
+                    return@withContext Result.success(cached.categories)
+                }
+                
+                val menu = body?.let { menuConverter.convert(it) }
+                if (menu == null || !menu.success) {
+                    return@withContext Result.failure(Exception(menu?.message ?: "Failed to load menu"))
+                }
+                
+                val categories = (menu.data ?: emptyList()).filter { !it.items.isNullOrEmpty() }
+                
+                saveSnapshot(
+                    MenuSnapshot(
+                        savedAt = System.currentTimeMillis(),
+                        categories = categories
+                    )
+                )
+                Result.success(categories)
             }
         } catch (e: Exception) {
             Result.failure(e)
         }
     }
     
-    suspend fun getMenuItems(): Result<List<MenuItem>> = withContext(Dispatchers.IO) {
-        try {
-            val response = apiService.getMenuItems(availableOnly = true)
-            if (response.success) {
-                Result.success(response.data ?: emptyList())
-            } else {
-                Result.failure(Exception(response.message ?: "Failed to load menu items"))
+    /**
+     * Returns the last menu successfully loaded from the network, or null if
+     * none has been stored yet. Reads from disk only once per process.
+     */
+    suspend fun getCachedCategoriesWithItems(): List<MenuCategory>? = withContext(Dispatchers.IO) {
+        readSnapshot()?.categories
+    }
+    
+    private fun readSnapshot(): MenuSnapshot? {
+        memorySnapshot?.let { return it }
+        
+        return try {
+            val file = snapshotFile
+            if (!file.exists()) return null
+            
+            snapshotJson.decodeFromString<MenuSnapshot>(file.readText()).also {
+                memorySnapshot = it
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            // A corrupt snapshot is not fatal, the next refresh overwrites it
+            snapshotFile.delete()
+            null
         }
     }
     
-    suspend fun getCategoriesWithItems(): Result<List<MenuCategory>> = withContext(Dispatchers.IO) {
+    private fun saveSnapshot(snapshot: MenuSnapshot) {
+        memorySnapshot = snapshot
+        
         try {
-            val categoriesResult = getCategories()
-            val itemsResult = getMenuItems()
-            
-            if (categoriesResult.isFailure) return@withContext categoriesResult
-            if (itemsResult.isFailure) return@withContext Result.failure(itemsResult.exceptionOrNull()!!)
-            
-            val categories = categoriesResult.getOrThrow()
-            val items = itemsResult.getOrThrow()
-            
-            val grouped = categories.map { category ->
-                category.copy(
-                    items = items.filter { it.categoryId == category.id }
-                )
-            }.filter { !it.items.isNullOrEmpty() }
-            
-            Result.success(grouped)
+            // Write to a temp file and rename so a crash never leaves a half-written snapshot
+            val tempFile = File(context.filesDir, "$SNAPSHOT_FILE_NAME.tmp")
+            tempFile.writeText(snapshotJson.encodeToString(snapshot))
+            if (!tempFile.renameTo(snapshotFile)) {
+                tempFile.delete()
+            }
         } catch (e: Exception) {
-            Result.failure(e)
+            e.printStackTrace()
         }
     }
+    
+    private companion object {
+        const val SNAPSHOT_FILE_NAME = "menu_snapshot.json"
+    }
 }
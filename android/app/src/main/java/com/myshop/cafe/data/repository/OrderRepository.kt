@@ -1,24 +1,116 @@
 package com.myshop.cafe.data.repository
 
+import android.content.Context
+import android.os.SystemClock
 import com.myshop.cafe.data.api.ApiService
 import com.myshop.cafe.data.models.*
+import com.myshop.cafe.data.polling.PollingScheduler
+import com.myshop.cafe.data.polling.SingleFlight
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
+import kotlinx.serialization.decodeFromString
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import retrofit2.HttpException
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
 class OrderRepository @Inject constructor(
-    private val apiService: ApiService
+    @ApplicationContext private val context: Context,
+    private val apiService: ApiService,
+    private val pollingScheduler: PollingScheduler,
+    private val userRepository: UserRepository,
+    private val cartRepository: CartRepository
 ) {
     
+    private val eventJson = Json { ignoreUnknownKeys = true }
+    
+    /** How one attempt to send an outbox order ended */
+    private sealed interface Delivery {
+        /** The server's final answer; the order leaves the outbox */
+        data class Answered(val result: Result<Order>) : Delivery
+        /** No answer, e.g. offline or a server error; sent again after a backoff */
+        data object Retry : Delivery
+        /** Rejected with 401 while [token] was the session token */
+        data class NeedsAuth(val token: String?) : Delivery
+    }
+    
+    // Orders not yet acknowledged by the server, oldest first, mirrored to disk.
+    // The parked keys and the waiters below are guarded by the same lock.
+    private val outboxLock = Mutex()
+    private var outbox: List<PendingOrder> = emptyList()
+    private val outboxWakeUp = Channel<Unit>(Channel.CONFLATED)
+    private val outboxScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    
+    // Completed once the outbox saved before the last restart has been read
+    private val outboxLoaded = CompletableDeferred<Unit>()
+    
+    // Idempotency key -> the token the server rejected it with. Parked orders are
+    // skipped so later orders don't queue up behind them, until the token changes.
+    private val parkedForAuth = HashMap<String, String?>()
+    
+    // Callers waiting for an order's answer; an answer nobody waits for is dropped
+    private val waiters = HashMap<String, CompletableDeferred<Result<Order>>>()
+    
+    private val outboxFile: File
+        get() = File(context.filesDir, OUTBOX_FILE_NAME)
+    
+    // Concurrent identical order reads share one request, and results are
+    // reused for a moment so screens refreshing together hit the network once
+    private val singleFlight = SingleFlight()
+    private val recentOrders = ConcurrentHashMap<String, CachedOrders>()
+    
+    private class CachedOrders(val orders: List<Order>, val storedAt: Long)
+    
+    init {
+        // Orders queued before the app was last killed are resent first
+        outboxScope.launch {
+            try {
+                outboxLock.withLock { outbox = readOutbox() }
+            } finally {
+                outboxLoaded.complete(Unit)
+            }
+            deliverOutbox()
+        }
+        outboxScope.launch { unparkOnNewToken() }
+    }
+    
+    /**
+     * Queues the order in the device outbox and waits a short while for the
+     * server's answer. If none arrives in time the result is
+     * [OrderSubmission.Queued]: the outbox keeps resending with backoff,
+     * across restarts too, [idempotencyKey] makes sure the server creates the
+     * order only once, and [awaitOrder] picks up the answer later.
+     */
     suspend fun createOrder(
+        idempotencyKey: String,
         customerPhone: String,
         customerName: String?,
         items: List<CartItem>,
         orderType: OrderType,
         tableNumber: Int?
-    ): Result<Order> = withContext(Dispatchers.IO) {
+    ): Result<OrderSubmission> = withContext(Dispatchers.IO) {
         try {
             val request = CreateOrderRequest(
                 customerPhone = customerPhone,
@@ -34,42 +126,208 @@ class OrderRepository @Inject constructor(
                 tableNumber = if (orderType == OrderType.DINE_IN) tableNumber else null
             )
             
-            val response = apiService.createOrder(request)
+            val answer = enqueue(PendingOrder(idempotencyKey, request, System.currentTimeMillis()))
+            
+            withTimeoutOrNull(ORDER_ANSWER_TIMEOUT_MS) { answer.await() }
+                ?.map { OrderSubmission.Placed(it) }
+                ?: Result.success(OrderSubmission.Queued)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+    }
+    
+    /**
+     * Waits for the server's answer to an order still in the outbox, e.g.
+     * after [createOrder] returned [OrderSubmission.Queued]. Fails at once
+     * if no order with this key is queued.
+     */
+    suspend fun awaitOrder(idempotencyKey: String): Result<Order> {
+        outboxLoaded.await()
+        val answer = outboxLock.withLock {
+            if (outbox.none { it.idempotencyKey == idempotencyKey }) {
+                null
+            } else {
+                waiters.getOrPut(idempotencyKey) { CompletableDeferred() }
+            }
+        } ?: return Result.failure(Exception("Order is no longer queued"))
+        return answer.await()
+    }
+    
+    private suspend fun enqueue(pending: PendingOrder): CompletableDeferred<Result<Order>> {
+        // Appending before the saved outbox is read would overwrite the orders in it
+        outboxLoaded.await()
+        val answer = outboxLock.withLock {
+            // Placing the same checkout again only waits for the order already queued
+            if (outbox.none { it.idempotencyKey == pending.idempotencyKey }) {
+                outbox = outbox + pending
+                writeOutbox(outbox)
+            }
+            waiters.getOrPut(pending.idempotencyKey) { CompletableDeferred() }
+        }
+        outboxWakeUp.trySend(Unit)
+        return answer
+    }
+    
+    private suspend fun deliverOutbox() {
+        outboxLoaded.await()
+        var failures = 0
+        while (true) {
+            val next = outboxLock.withLock { outbox.firstOrNull { it.idempotencyKey !in parkedForAuth } }
+            if (next == null) {
+                outboxWakeUp.receive()
+                continue
+            }
+            
+            when (val delivery = send(next)) {
+                is Delivery.Retry -> {
+                    failures++
+                    // Back off, but try again at once when another order is queued
+                    withTimeoutOrNull(pollingScheduler.backoffDelay(RETRY_DELAY_MS, failures)) {
+                        outboxWakeUp.receive()
+                    }
+                }
+                is Delivery.NeedsAuth -> outboxLock.withLock {
+                    // A token that changed during the request gets its resend straight away
+                    if (userRepository.currentToken == delivery.token) {
+                        parkedForAuth[next.idempotencyKey] = delivery.token
+                    }
+                }
+                is Delivery.Answered -> {
+                    failures = 0
+                    outboxLock.withLock {
+                        outbox = outbox.filterNot { it.idempotencyKey == next.idempotencyKey }
+                        writeOutbox(outbox)
+                        waiters.remove(next.idempotencyKey)?.complete(delivery.result)
+                    }
+                    // The checkout may be long gone, so the paid cart is cleared here
+                    if (delivery.result.isSuccess) cartRepository.clearOrdered(next.idempotencyKey)
+                }
+            }
+        }
+    }
+    
+    /**
+     * Resends parked orders once the session has a token other than the one
+     * they were rejected with, e.g. after the customer logs in again.
+     */
+    private suspend fun unparkOnNewToken() {
+        userRepository.userSession
+            .map { it.token }
+            .distinctUntilChanged()
+            .collect { token ->
+                val unparked = outboxLock.withLock {
+                    parkedForAuth.values.removeAll { it != token }
+                }
+                if (unparked) outboxWakeUp.trySend(Unit)
+            }
+    }
+    
+    /**
+     * Sends one outbox order and classifies the outcome: a final answer,
+     * a retry, or a rejected session.
+     */
+    private suspend fun send(pending: PendingOrder): Delivery {
+        val token = userRepository.currentToken
+        return try {
+            val response = apiService.createOrder(pending.request, pending.idempotencyKey)
             if (response.success && response.data != null) {
-                Result.success(response.data.order)
+                invalidateOrders()
+                Delivery.Answered(Result.success(response.data.order))
             } else {
-                Result.failure(Exception(response.message ?: "Failed to place order"))
+                Delivery.Answered(Result.failure(Exception(response.message ?: "Failed to place order")))
+            }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: IOException) {
+            Delivery.Retry
+        } catch (e: HttpException) {
+            // Validation errors will not change on a resend; outages and throttling will
+            val code = e.code()
+            when {
+                code == 401 -> Delivery.NeedsAuth(token)
+                code == 408 || code == 429 || code >= 500 -> Delivery.Retry
+                else -> {
+                    val message = runCatching {
+                        eventJson.decodeFromString<CreateOrderResponse>(e.response()?.errorBody()?.string().orEmpty()).message
+                    }.getOrNull()
+                    Delivery.Answered(Result.failure(Exception(message ?: "Failed to place order")))
+                }
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Delivery.Answered(Result.failure(e))
         }
     }
     
-    suspend fun getCustomerOrders(phone: String): Result<List<Order>> = withContext(Dispatchers.IO) {
+    private fun readOutbox(): List<PendingOrder> {
+        return try {
+            val file = outboxFile
+            if (!file.exists()) return emptyList()
+            eventJson.decodeFromString<List<PendingOrder>>(file.readText())
+        } catch (e: Exception) {
+            e.printStackTrace()
+            emptyList()
+        }
+    }
+    
+    private fun writeOutbox(orders: List<PendingOrder>) {
         try {
+            // Write to a temp file and rename so a crash never leaves a half-written outbox
+            val tempFile = File(context.filesDir, "$OUTBOX_FILE_NAME.tmp")
+            FileOutputStream(tempFile).use { output ->
+                output.write(eventJson.encodeToString(orders).toByteArray())
+                // Reach the disk before returning, these orders are already paid for
+                output.fd.sync()
+            }
+            if (!tempFile.renameTo(outboxFile)) tempFile.delete()
+        } catch (e: Exception) {
+            e.printStackTrace()
+        }
+    }
+    
+    suspend fun getCustomerOrders(phone: String): Result<List<Order>> =
+        sharedOrders("customer:$phone") {
             val response = apiService.getCustomerOrders(phone)
             if (response.success) {
                 Result.success(response.data ?: emptyList())
             } else {
                 Result.failure(Exception(response.message ?: "Failed to load orders"))
             }
-        } catch (e: Exception) {
-            Result.failure(e)
         }
-    }
     
-    suspend fun getOrdersQueue(): Result<List<Order>> = withContext(Dispatchers.IO) {
-        try {
+    suspend fun getOrdersQueue(): Result<List<Order>> =
+        sharedOrders("queue") {
             val response = apiService.getOrdersQueue()
             if (response.success) {
                 Result.success(response.data ?: emptyList())
             } else {
                 Result.failure(Exception(response.message ?: "Failed to load order queue"))
             }
+        }
+    
+    private suspend fun sharedOrders(
+        key: String,
+        fetch: suspend () -> Result<List<Order>>
+    ): Result<List<Order>> = withContext(Dispatchers.IO) {
+        recentOrders[key]
+            ?.takeIf { SystemClock.elapsedRealtime() - it.storedAt < RESULT_TTL_MS }
+            ?.let { return@withContext Result.success(it.orders) }
+        
+        try {
+            singleFlight.run(key) {
+                fetch().onSuccess { orders ->
+                    recentOrders[key] = CachedOrders(orders, SystemClock.elapsedRealtime())
+                }
+            }
         } catch (e: Exception) {
             Result.failure(e)
         }
     }
+    
+    private fun invalidateOrders() {
+        recentOrders.clear()
+    }
 
     suspend fun verifyKhqr(md5: String): Result<Boolean> = withContext(Dispatchers.IO) {
         try {
@@ -83,4 +341,86 @@ class OrderRepository @Inject constructor(
             Result.failure(e)
         }
     }
+
+    /**
+     * Waits on the server until the KHQR payment for md5 lands. Succeeds with
+     * false when the long-poll window closed without a payment.
+     */
+    suspend fun awaitKhqrPayment(md5: String): Result<Boolean> = withContext(Dispatchers.IO) {
+        try {
+            val response = apiService.awaitKhqrPayment(md5)
+            when {
+                response.success -> Result.success(true)
+                response.pending -> Result.success(false)
+                else -> Result.failure(Exception(response.message ?: "Payment not verified"))
+            }
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+    }
+    
+    /**
+     * Status transitions of one customer's orders pushed by the server over
+     * SSE. The stream reconnects with backoff, disconnects while the app is
+     * in the background and resumes from the last received event, so
+     * collectors only need to apply the events to their current list.
+     */
+    fun orderEvents(phone: String): Flow<OrderEvent> {
+        var lastEventId: String? = null
+        var failures = 0
+        
+        val stream = flow {
+            while (true) {
+                try {
+                    apiService.streamOrderEvents(phone, lastEventId).use { body ->
+                        val source = body.source()
+                        var eventName: String? = null
+                        var eventId: String? = null
+                        val data = StringBuilder()
+                        failures = 0
+                        
+                        while (true) {
+                            val line = source.readUtf8Line() ?: break
+                            when {
+                                line.isEmpty() -> {
+                                    if (eventName == ORDER_EVENT && data.isNotEmpty()) {
+                                        runCatching { eventJson.decodeFromString<OrderEvent>(data.toString()) }
+                                            .onSuccess {
+                                                // Cached lists are stale once anything changed
+                                                invalidateOrders()
+                                                emit(it)
+                                            }
+                                    }
+                                    if (eventId != null) lastEventId = eventId
+                                    eventName = null
+                                    eventId = null
+                                    data.setLength(0)
+                                }
+                                line.startsWith("event:") -> eventName = line.substringAfter(':').trim()
+                                line.startsWith("id:") -> eventId = line.substringAfter(':').trim()
+                                line.startsWith("data:") -> data.append(line.substringAfter(':').trim())
+                                // Comments (heartbeats) and retry hints need no handling
+                            }
+                        }
+                    }
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    failures++
+                }
+                delay(pollingScheduler.backoffDelay(RECONNECT_DELAY_MS, failures))
+            }
+        }.flowOn(Dispatchers.IO)
+        
+        return pollingScheduler.whileInForeground(stream)
+    }
+    
+    private companion object {
+        const val ORDER_EVENT = "order"
+        const val RECONNECT_DELAY_MS = 2000L
+        const val RESULT_TTL_MS = 2000L
+        const val RETRY_DELAY_MS = 2000L
+        const val ORDER_ANSWER_TIMEOUT_MS = 15_000L
+        const val OUTBOX_FILE_NAME = "order_outbox.json"
+    }
 }
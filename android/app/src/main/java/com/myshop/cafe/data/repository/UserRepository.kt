@@ -9,8 +9,13 @@ import androidx.datastore.preferences.core.stringPreferencesKey
 import androidx.datastore.preferences.preferencesDataStore
 import com.myshop.cafe.data.models.UserSession
 import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicReference
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -39,7 +44,22 @@ class UserRepository @Inject constructor(
 
     val isLoggedIn: Flow<Boolean> = userSession.map { it.isLoggedIn }
 
+    // In-memory mirror of the stored token so the HTTP layer never waits on DataStore
+    private val authToken = AtomicReference<String?>(null)
+    private val sessionScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    init {
+        sessionScope.launch {
+            userSession.collect { session -> authToken.set(session.token) }
+        }
+    }
+
+    /** The current auth token, read without blocking. */
+    val currentToken: String?
+        get() = authToken.get()
+
     suspend fun login(phoneNumber: String, customerName: String?, token: String) {
+        authToken.set(token)
         context.dataStore.edit { preferences ->
             preferences[PreferencesKeys.PHONE_NUMBER] = phoneNumber
             preferences[PreferencesKeys.CUSTOMER_NAME] = customerName ?: ""
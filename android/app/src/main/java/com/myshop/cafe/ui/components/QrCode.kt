@@ -0,0 +1,67 @@
+package com.myshop.cafe.ui.components
+
+import androidx.compose.foundation.Canvas
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.remember
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.geometry.Offset
+import androidx.compose.ui.geometry.Size
+import androidx.compose.ui.graphics.Color
+import com.google.zxing.common.BitMatrix
+import kotlin.math.floor
+
+/**
+ * Draws a QR code straight onto the canvas from its module matrix, so it
+ * stays sharp at any density without allocating a full-size bitmap.
+ * Each horizontal run of dark modules is drawn as one rectangle.
+ */
+@Composable
+fun QrCode(
+    modules: BitMatrix,
+    modifier: Modifier = Modifier,
+    color: Color = Color.Black
+) {
+    val runs = remember(modules) { darkModuleRuns(modules) }
+    
+    Canvas(modifier = modifier) {
+        // Whole-pixel modules keep edges crisp, the leftover space is split as margin
+        val cell = floor(minOf(size.width / modules.width, size.height / modules.height))
+            .coerceAtLeast(1f)
+        val originX = (size.width - cell * modules.width) / 2f
+        val originY = (size.height - cell * modules.height) / 2f
+        
+        for (i in runs.indices step 3) {
+            drawRect(
+                color = color,
+                topLeft = Offset(originX + runs[i] * cell, originY + runs[i + 1] * cell),
+                size = Size(runs[i + 2] * cell, cell)
+            )
+        }
+    }
+}
+
+/**
+ * Flattens the matrix into (x, y, length) triples, one per run of dark modules.
+ */
+private fun darkModuleRuns(modules: BitMatrix): IntArray {
+    var runs = IntArray(modules.height * 12)
+    var count = 0
+    
+    for (y in 0 until modules.height) {
+        var x = 0
+        while (x < modules.width) {
+            if (!modules[x, y]) {
+                x++
+                continue
+            }
+            val start = x
+            while (x < modules.width && modules[x, y]) x++
+            
+            if (count + 3 > runs.size) runs = runs.copyOf(runs.size * 2)
+            runs[count++] = start
+            runs[count++] = y
+            runs[count++] = x - start
+        }
+    }
+    return runs.copyOf(count)
+}
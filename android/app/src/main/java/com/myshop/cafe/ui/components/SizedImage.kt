@@ -0,0 +1,17 @@
+package com.myshop.cafe.ui.components
+
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.remember
+import androidx.compose.ui.platform.LocalDensity
+import androidx.compose.ui.unit.Dp
+import com.myshop.cafe.utils.ImageUrlUtil
+
+/**
+ * The URL of a variant of [url] sized for a slot [width] wide, so list
+ * thumbnails never download or decode the full-resolution upload.
+ */
+@Composable
+fun rememberSizedImageUrl(url: String, width: Dp): String {
+    val widthPx = with(LocalDensity.current) { width.roundToPx() }
+    return remember(url, widthPx) { ImageUrlUtil.sized(url, widthPx) }
+}
@@ -32,6 +32,8 @@ import androidx.hilt.navigation.compose.hiltViewModel
 import coil.compose.AsyncImage
 import com.myshop.cafe.R
 import com.myshop.cafe.data.models.CartItem
+import com.myshop.cafe.data.models.Money
+import com.myshop.cafe.ui.components.rememberSizedImageUrl
 import com.myshop.cafe.ui.theme.*
 import com.myshop.cafe.ui.screens.menu.getCoffeeImageUrl
 
@@ -179,7 +181,10 @@ private fun CartItemCard(
         ) {
             // Product Image
             AsyncImage(
-                model = item.menuItem.imageUrl ?: getCoffeeImageUrl(item.menuItem.name),
+                model = rememberSizedImageUrl(
+                    url = item.menuItem.imageUrl ?: getCoffeeImageUrl(item.menuItem.name),
+                    width = 70.dp
+                ),
                 contentDescription = item.menuItem.name,
                 contentScale = ContentScale.Crop,
                 modifier = Modifier
@@ -205,7 +210,7 @@ private fun CartItemCard(
                 
                 // Price
                 Text(
-                    text = "US $${String.format("%.2f", item.unitPrice)}",
+                    text = "US ${item.unitPrice.format()}",
                     style = MaterialTheme.typography.titleMedium,
                     color = TextDark,
                     fontWeight = FontWeight.Bold,
@@ -304,7 +309,7 @@ private fun CartItemCard(
 
 @Composable
 private fun CartBottomSummary(
-    total: Double,
+    total: Money,
     onCheckoutClick: () -> Unit,
     onClearClick: () -> Unit
 ) {
@@ -326,7 +331,7 @@ private fun CartBottomSummary(
                 fontSize = 15.sp
             )
             Text(
-                text = "US $${String.format("%.2f", total)}",
+                text = "US ${total.format()}",
                 style = MaterialTheme.typography.headlineMedium,
                 color = TextLight,
                 fontWeight = FontWeight.Bold,
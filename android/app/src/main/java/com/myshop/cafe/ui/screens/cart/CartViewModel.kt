@@ -3,6 +3,7 @@ package com.myshop.cafe.ui.screens.cart
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.myshop.cafe.data.models.CartItem
+import com.myshop.cafe.data.models.Money
 import com.myshop.cafe.data.repository.CartRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -13,7 +14,7 @@ import javax.inject.Inject
 
 data class CartUiState(
     val items: List<CartItem> = emptyList(),
-    val totalPrice: Double = 0.0
+    val totalPrice: Money = Money.ZERO
 )
 
 @HiltViewModel
@@ -30,10 +31,10 @@ class CartViewModel @Inject constructor(
     
     private fun observeCart() {
         viewModelScope.launch {
-            cartRepository.cartItems.collect { items ->
+            cartRepository.summary.collect { summary ->
                 _uiState.value = CartUiState(
-                    items = items,
-                    totalPrice = items.sumOf { it.totalPrice }
+                    items = summary.items,
+                    totalPrice = summary.subtotal
                 )
             }
         }
@@ -28,6 +28,7 @@ import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
 import com.myshop.cafe.R
+import com.myshop.cafe.data.models.Money
 import com.myshop.cafe.data.models.OrderType
 import com.myshop.cafe.ui.theme.*
 import androidx.compose.animation.*
@@ -37,7 +38,6 @@ import androidx.compose.foundation.BorderStroke
 import androidx.compose.material3.RadioButton
 import androidx.compose.material3.RadioButtonDefaults
 import androidx.compose.ui.draw.clip
-import androidx.compose.ui.graphics.asImageBitmap
 import androidx.compose.ui.platform.LocalContext
 import android.content.Intent
 import android.net.Uri
@@ -47,6 +47,10 @@ import android.content.ClipData
 import android.content.Context
 import androidx.compose.ui.window.Dialog
 import com.myshop.cafe.utils.KhqrUtil
+import com.myshop.cafe.ui.components.QrCode
+import com.google.zxing.common.BitMatrix
+import androidx.compose.ui.semantics.contentDescription
+import androidx.compose.ui.semantics.semantics
 
 val TealPay = Color(0xFF1B8A9E)
 
@@ -89,6 +93,14 @@ fun CheckoutScreen(
         }
     }
     
+    // Paid order waiting in the outbox: tell the customer it is not lost
+    val orderQueuedMessage = stringResource(R.string.order_queued)
+    LaunchedEffect(uiState.isOrderQueued) {
+        if (uiState.isOrderQueued) {
+            snackbarHostState.showSnackbar(orderQueuedMessage)
+        }
+    }
+    
     Scaffold(
         topBar = {
             TopAppBar(
@@ -234,12 +246,14 @@ fun CheckoutScreen(
                     modifier = Modifier
                         .weight(1f)
                         .height(56.dp),
-                    enabled = !uiState.isSubmitting,
-                    containerColor = if (uiState.isSubmitting) TextGray else TealPay,
+                    enabled = !uiState.isSubmitting && !uiState.isOrderQueued,
+                    containerColor = if (uiState.isSubmitting || uiState.isOrderQueued) TextGray else TealPay,
                     shape = RoundedCornerShape(12.dp)
                 ) {
                     if (uiState.isSubmitting) {
                         CircularProgressIndicator(modifier = Modifier.size(24.dp), color = Color.White)
+                    } else if (uiState.isOrderQueued) {
+                        Text(stringResource(R.string.order_queued_button), fontWeight = FontWeight.Bold, color = Color.White)
                     } else {
                         Row(verticalAlignment = Alignment.CenterVertically) {
                             Text("Pay Now", fontWeight = FontWeight.Bold, color = Color.White)
@@ -263,7 +277,7 @@ fun CheckoutScreen(
 }
 
 @Composable
-private fun SummaryCard(total: Double) {
+private fun SummaryCard(total: Money) {
     Surface(
         modifier = Modifier.fillMaxWidth(),
         shape = RoundedCornerShape(24.dp),
@@ -300,7 +314,7 @@ private fun SummaryCard(total: Double) {
                 )
             }
             Text(
-                text = "${String.format("%,.2f", if (total.isNaN()) 0.0 else total)} USD",
+                text = "${total.toPlainString(groupThousands = true)} USD",
                 style = MaterialTheme.typography.titleLarge,
                 fontWeight = FontWeight.Black,
                 color = TextLight
@@ -605,13 +619,13 @@ val BakongRed = Color(0xFFE1232E)
 @Composable
 fun KhqrPaymentDialog(
     khqrString: String,
-    amount: Double,
+    amount: Money,
     deepLinkUrl: String? = null,
     onDismiss: () -> Unit
 ) {
     val context = LocalContext.current
-    val bitmap = remember(khqrString) {
-        KhqrUtil.generateQrBitmap(khqrString, 800)
+    val qrModules by produceState<BitMatrix?>(initialValue = null, khqrString) {
+        value = KhqrUtil.generateQrModules(khqrString)
     }
 
     Dialog(onDismissRequest = onDismiss) {
@@ -657,7 +671,7 @@ fun KhqrPaymentDialog(
                     )
                     
                     Text(
-                        text = "$${String.format("%.2f", amount)}",
+                        text = amount.format(),
                         style = MaterialTheme.typography.headlineMedium,
                         fontWeight = FontWeight.Black,
                         color = Color.Black
@@ -675,14 +689,14 @@ fun KhqrPaymentDialog(
                         border = BorderStroke(1.dp, Color.LightGray.copy(alpha = 0.5f)),
                         color = Color.White
                     ) {
-                        if (bitmap != null) {
-                            androidx.compose.foundation.Image(
-                                bitmap = bitmap.asImageBitmap(),
-                                contentDescription = "KHQR Code",
+                        val modules = qrModules
+                        if (modules != null) {
+                            QrCode(
+                                modules = modules,
                                 modifier = Modifier
                                     .fillMaxSize()
                                     .padding(16.dp)
-                                    .clip(RoundedCornerShape(8.dp))
+                                    .semantics { contentDescription = "KHQR Code" }
                             )
                         } else {
                             Box(modifier = Modifier.fillMaxSize(), contentAlignment = Alignment.Center) {
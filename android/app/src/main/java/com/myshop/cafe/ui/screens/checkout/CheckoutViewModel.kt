@@ -3,21 +3,29 @@ package com.myshop.cafe.ui.screens.checkout
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.myshop.cafe.data.models.CartItem
+import com.myshop.cafe.data.models.Money
 import com.myshop.cafe.data.models.Order
+import com.myshop.cafe.data.models.OrderSubmission
 import com.myshop.cafe.data.models.OrderType
+import com.myshop.cafe.data.models.PendingPayment
+import com.myshop.cafe.data.polling.PollingScheduler
 import com.myshop.cafe.data.repository.CartRepository
+import com.myshop.cafe.data.repository.MenuRepository
 import com.myshop.cafe.data.repository.OrderRepository
 import com.myshop.cafe.data.repository.UserRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.Job
-import kotlinx.coroutines.isActive
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import com.myshop.cafe.utils.HashUtil
 import com.myshop.cafe.utils.KhqrUtil
 import java.net.URLEncoder
+import java.util.UUID
 import javax.inject.Inject
 
 enum class PaymentMethod {
@@ -29,12 +37,13 @@ enum class PaymentMethod {
 
 data class CheckoutUiState(
     val items: List<CartItem> = emptyList(),
-    val totalPrice: Double = 0.0,
+    val totalPrice: Money = Money.ZERO,
     val orderType: OrderType = OrderType.TAKEAWAY,
     val tableNumber: String = "",
     val phoneNumber: String = "",
     val customerName: String = "",
     val isSubmitting: Boolean = false,
+    val isOrderQueued: Boolean = false,
     val error: String? = null,
     val successOrder: Order? = null,
     val showKhqr: Boolean = false,
@@ -48,16 +57,26 @@ data class CheckoutUiState(
 @HiltViewModel
 class CheckoutViewModel @Inject constructor(
     private val cartRepository: CartRepository,
+    private val menuRepository: MenuRepository,
     private val orderRepository: OrderRepository,
-    private val userRepository: UserRepository
+    private val userRepository: UserRepository,
+    private val pollingScheduler: PollingScheduler
 ) : ViewModel() {
     
     private val _uiState = MutableStateFlow(CheckoutUiState())
     val uiState: StateFlow<CheckoutUiState> = _uiState.asStateFlow()
     
+    // Declared before init: a restored payment is picked up while the constructor runs
+    private var khqrJob: Job? = null
+    private var pollingJob: Job? = null
+
+    // One key per checkout: every submission of this payment's order carries it
+    private var orderKey: String? = null
+    
     init {
         observeCart()
         observeUserSession()
+        observePendingPayment()
     }
     
     private fun observeUserSession() {
@@ -75,11 +94,39 @@ class CheckoutViewModel @Inject constructor(
     
     private fun observeCart() {
         viewModelScope.launch {
-            cartRepository.cartItems.collect { items ->
+            cartRepository.summary.collect { summary ->
                 _uiState.value = _uiState.value.copy(
-                    items = items,
-                    totalPrice = items.sumOf { it.totalPrice }
+                    items = summary.items,
+                    totalPrice = summary.subtotal
+                )
+            }
+        }
+    }
+    
+    /**
+     * Picks up a payment journaled before the process was killed, typically
+     * while the customer was paying in the banking app, and goes back to
+     * waiting for it so the paid order still gets placed.
+     */
+    private fun observePendingPayment() {
+        viewModelScope.launch {
+            cartRepository.pendingPayment.collect { payment ->
+                val state = _uiState.value
+                if (payment == null || payment.md5 == state.paymentMd5 || state.isSubmitting || state.isOrderQueued) return@collect
+                
+                khqrJob?.cancel()
+                orderKey = payment.orderKey
+                _uiState.value = state.copy(
+                    phoneNumber = payment.customerPhone,
+                    customerName = payment.customerName ?: state.customerName,
+                    orderType = payment.orderType,
+                    tableNumber = payment.tableNumber,
+                    showKhqr = true,
+                    khqrString = payment.payload,
+                    paymentMd5 = payment.md5,
+                    deepLinkUrl = payment.deepLinkUrl
                 )
+                startPaymentPolling(payment.md5)
             }
         }
     }
@@ -113,47 +160,78 @@ class CheckoutViewModel @Inject constructor(
     }
     
     fun showKhqr(show: Boolean) {
-        val state = _uiState.value
-        
+        khqrJob?.cancel()
+
         if (show) {
-            // Generate KHQR
-            val billNo = "CAFE${System.currentTimeMillis().toString().takeLast(8)}"
-            val khqr = KhqrUtil.generateKhqr(
-                KhqrUtil.KhqrConfig(
-                    amount = state.totalPrice,
-                    currency = "USD",
-                    merchantName = "MY SHOP",
-                    accountNumber = "lavin_mara@bkrt",
-                    billNumber = billNo
-                )
-            )
-            val md5 = KhqrUtil.generateMd5(khqr)
-            
-            _uiState.value = state.copy(
-                showKhqr = true,
-                khqrString = khqr,
-                paymentMd5 = md5,
-                deepLinkUrl = if (state.selectedPaymentMethod == PaymentMethod.ACLEDA_MOBILE) {
+            khqrJob = viewModelScope.launch {
+                // The QR must ask for what the server will charge, so price the cart against the current menu
+                val menu = menuRepository.getCategoriesWithItems().getOrElse {
+                    _uiState.value = _uiState.value.copy(error = "Could not check the latest prices. Please try again.")
+                    return@launch
+                }
+                if (cartRepository.reprice(menu.flatMap { it.items.orEmpty() })) {
+                    // Show the new total before asking for payment
+                    _uiState.value = _uiState.value.copy(error = "Some items changed price or are no longer available. Please review your order.")
+                    return@launch
+                }
+                val amount = cartRepository.totalPrice
+                
+                // Encode and hash off the main thread, the dialog opens once the payload is ready
+                val billNo = "CAFE${System.currentTimeMillis().toString().takeLast(8)}"
+                val key = UUID.randomUUID().toString()
+                orderKey = key
+                val (khqr, md5) = withContext(Dispatchers.Default) {
+                    val payload = KHQR_TEMPLATE.build(amount = amount, billNumber = billNo)
+                    payload to HashUtil.md5Hex(payload)
+                }
+
+                val state = _uiState.value
+                val deepLinkUrl = if (state.selectedPaymentMethod == PaymentMethod.ACLEDA_MOBILE) {
                     val encodedKhqr = URLEncoder.encode(khqr, "UTF-8")
                     "acledamobile://khqr/scan?qr=$encodedKhqr"
                 } else null
-            )
-            
-            // Start polling
-            startPaymentPolling(md5)
+                _uiState.value = state.copy(
+                    showKhqr = true,
+                    khqrString = khqr,
+                    paymentMd5 = md5,
+                    deepLinkUrl = deepLinkUrl
+                )
+                
+                // Journal it before the customer leaves for the banking app
+                cartRepository.setPendingPayment(
+                    PendingPayment(
+                        md5 = md5,
+                        payload = khqr,
+                        amountCents = amount.cents,
+                        billNumber = billNo,
+                        orderKey = key,
+                        customerPhone = state.phoneNumber,
+                        customerName = state.customerName.takeIf { it.isNotBlank() },
+                        orderType = state.orderType,
+                        tableNumber = state.tableNumber,
+                        deepLinkUrl = deepLinkUrl
+                    )
+                )
+
+                // Start polling
+                startPaymentPolling(md5)
+            }
         } else {
-            _uiState.value = state.copy(
+            _uiState.value = _uiState.value.copy(
                 showKhqr = false,
                 khqrString = null,
                 paymentMd5 = null,
                 deepLinkUrl = null
             )
             stopPolling()
+            cartRepository.setPendingPayment(null)
         }
     }
 
     fun onPayNowClick() {
         val state = _uiState.value
+        // The paid order is still being sent; paying again would charge twice
+        if (state.isOrderQueued) return
         
         if (state.phoneNumber.isBlank()) {
             _uiState.value = state.copy(error = "Please enter your phone number")
@@ -180,25 +258,16 @@ class CheckoutViewModel @Inject constructor(
         }
     }
     
-    private var pollingJob: Job? = null
-    
     private fun startPaymentPolling(md5: String) {
         stopPolling()
         pollingJob = viewModelScope.launch {
-            while (isActive) {
-                delay(3000) // Poll every 3 seconds
-                
-                orderRepository.verifyKhqr(md5)
-                    .onSuccess { verified ->
-                        if (verified) {
-                            placeOrder(isPaid = true)
-                            stopPolling()
-                        }
-                    }
-                    .onFailure {
-                        // Continue polling on error
-                    }
-            }
+            // Each call blocks on the server until the payment lands or the window closes.
+            // Keep waiting in the background, the customer is in their banking app by then.
+            pollingScheduler.poll(key = "khqr:$md5", intervalMs = 0, pauseInBackground = false) {
+                orderRepository.awaitKhqrPayment(md5)
+            }.first { verified -> verified }
+            
+            placeOrder(isPaid = true)
         }
     }
     
@@ -209,6 +278,7 @@ class CheckoutViewModel @Inject constructor(
 
     fun placeOrder(isPaid: Boolean = false) {
         val state = _uiState.value
+        if (state.isSubmitting || state.isOrderQueued) return
         
         // Validation
         if (state.phoneNumber.isBlank()) {
@@ -230,25 +300,55 @@ class CheckoutViewModel @Inject constructor(
             _uiState.value = state.copy(isSubmitting = true, showKhqr = false, error = null)
             
             val tableNum = state.tableNumber.toIntOrNull()
+            val key = orderKey ?: UUID.randomUUID().toString().also { orderKey = it }
             
             orderRepository.createOrder(
+                idempotencyKey = key,
                 customerPhone = state.phoneNumber,
                 customerName = state.customerName.takeIf { it.isNotBlank() },
                 items = state.items,
                 orderType = state.orderType,
                 tableNumber = tableNum
-            ).onSuccess { order ->
-                cartRepository.clearCart()
-                _uiState.value = _uiState.value.copy(
-                    isSubmitting = false,
-                    successOrder = order
-                )
+            ).onSuccess { submission ->
+                when (submission) {
+                    is OrderSubmission.Placed -> onOrderPlaced(submission.order)
+                    is OrderSubmission.Queued -> {
+                        // Paid but not acknowledged yet: the outbox keeps sending it, wait for it here
+                        _uiState.value = _uiState.value.copy(isSubmitting = false, isOrderQueued = true)
+                        orderRepository.awaitOrder(key)
+                            .onSuccess { order -> onOrderPlaced(order) }
+                            .onFailure { error -> onOrderFailed(error) }
+                    }
+                }
             }.onFailure { error ->
-                _uiState.value = _uiState.value.copy(
-                    isSubmitting = false,
-                    error = error.message ?: "Failed to place order"
-                )
+                onOrderFailed(error)
             }
         }
     }
+    
+    private fun onOrderPlaced(order: Order) {
+        orderKey = null
+        cartRepository.clearCart()
+        _uiState.value = _uiState.value.copy(
+            isSubmitting = false,
+            isOrderQueued = false,
+            successOrder = order
+        )
+    }
+    
+    private fun onOrderFailed(error: Throwable) {
+        _uiState.value = _uiState.value.copy(
+            isSubmitting = false,
+            isOrderQueued = false,
+            error = error.message ?: "Failed to place order"
+        )
+    }
+
+    private companion object {
+        // Merchant fields are fixed, so the static part of every payment QR is encoded once
+        val KHQR_TEMPLATE = KhqrUtil.KhqrTemplate(
+            merchantName = "MY SHOP",
+            accountNumber = "lavin_mara@bkrt"
+        )
+    }
 }
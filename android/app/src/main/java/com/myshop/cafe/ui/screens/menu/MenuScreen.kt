@@ -4,11 +4,11 @@ import androidx.compose.animation.*
 import androidx.compose.animation.core.*
 import androidx.compose.foundation.*
 import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.LazyListState
 import androidx.compose.foundation.lazy.LazyRow
-import androidx.compose.foundation.lazy.grid.GridCells
-import androidx.compose.foundation.lazy.grid.LazyVerticalGrid
-import androidx.compose.foundation.lazy.grid.items
 import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.foundation.shape.CircleShape
 import androidx.compose.foundation.shape.RoundedCornerShape
 import androidx.compose.material.icons.Icons
@@ -25,15 +25,27 @@ import androidx.compose.ui.draw.shadow
 import androidx.compose.ui.graphics.Brush
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.layout.ContentScale
+import androidx.compose.ui.platform.LocalConfiguration
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.platform.LocalDensity
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.style.TextOverflow
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
 import coil.compose.AsyncImage
+import coil.imageLoader
+import coil.request.CachePolicy
+import coil.request.ImageRequest
 import com.myshop.cafe.data.models.MenuItem
 import com.myshop.cafe.data.models.Size
+import com.myshop.cafe.data.models.priceFor
+import com.myshop.cafe.ui.components.rememberSizedImageUrl
 import com.myshop.cafe.ui.theme.*
+import com.myshop.cafe.utils.ImageUrlUtil
+import kotlinx.collections.immutable.ImmutableList
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.map
 
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
@@ -42,6 +54,17 @@ fun MenuScreen(
 ) {
     val uiState by viewModel.uiState.collectAsState()
     var showSizeSheet by remember { mutableStateOf<MenuItem?>(null) }
+
+    // Stable callbacks, so cart and toast updates don't invalidate the list items
+    val onSearchQueryChange = remember(viewModel) { { query: String -> viewModel.onSearchQueryChange(query) } }
+    val onCategorySelect = remember(viewModel) { { id: String -> viewModel.selectCategory(id) } }
+    val onQuickAdd = remember(viewModel) { { item: MenuItem -> viewModel.quickAdd(item) } }
+    val onItemClick = remember { { item: MenuItem -> showSizeSheet = item } }
+    val onQRClick = remember(viewModel) { { viewModel.toggleScanner(true) } }
+
+    // Hoisted so the carousel keeps its scroll position while scrolled off screen
+    val productRowState = rememberLazyListState()
+    PrefetchProductImages(rowState = productRowState, items = uiState.filteredItems)
     
     // Theme colors matching mockup
     val backgroundColor = DarkNavy
@@ -56,46 +79,47 @@ fun MenuScreen(
         if (uiState.isLoading) {
             LoadingState()
         } else {
-            Column(
-                modifier = Modifier
-                    .fillMaxSize()
-                    .verticalScroll(rememberScrollState())
-                    .padding(bottom = 120.dp), // Space for bottom nav
-                horizontalAlignment = Alignment.CenterHorizontally
+            // One lazy column for the whole screen, so sections off screen are not composed
+            LazyColumn(
+                modifier = Modifier.fillMaxSize(),
+                contentPadding = PaddingValues(bottom = 120.dp) // Space for bottom nav
             ) {
                 // Header Section
-                HeaderSection(
-                    searchQuery = uiState.searchQuery,
-                    onSearchQueryChange = viewModel::onSearchQueryChange,
-                    onQRClick = { viewModel.toggleScanner(true) }
-                )
-                
-                Spacer(modifier = Modifier.height(24.dp))
+                item(key = "header", contentType = "header") {
+                    HeaderSection(
+                        searchQuery = uiState.searchQuery,
+                        onSearchQueryChange = onSearchQueryChange,
+                        onQRClick = onQRClick
+                    )
+                }
                 
                 // Category Tabs
-                CategorySection(
-                    categories = uiState.categories,
-                    selectedCategoryId = uiState.selectedCategoryId,
-                    onCategorySelect = viewModel::selectCategory
-                )
-                
-                Spacer(modifier = Modifier.height(24.dp))
-                
-                // Product Grid
-                ProductGridSection(
-                    items = uiState.filteredItems,
-                    onItemClick = { showSizeSheet = it },
-                    onQuickAdd = viewModel::quickAdd
-                )
+                item(key = "categories", contentType = "categories") {
+                    CategorySection(
+                        categories = uiState.menu.categories,
+                        selectedCategoryId = uiState.selectedCategoryId,
+                        onCategorySelect = onCategorySelect,
+                        modifier = Modifier.padding(vertical = 24.dp)
+                    )
+                }
                 
-                Spacer(modifier = Modifier.height(32.dp))
+                // Product Carousel
+                item(key = "products", contentType = "products") {
+                    ProductCarousel(
+                        items = uiState.filteredItems,
+                        onItemClick = onItemClick,
+                        onQuickAdd = onQuickAdd,
+                        state = productRowState
+                    )
+                }
                 
                 // Special For You Section
-                SpecialForYouSection(
-                    items = uiState.categories
-                        .flatMap { it.items ?: emptyList() }
-                        .take(1)
-                )
+                item(key = "special", contentType = "special") {
+                    SpecialForYouSection(
+                        item = uiState.menu.specialItem,
+                        modifier = Modifier.padding(top = 32.dp)
+                    )
+                }
             }
         }
     }
@@ -264,15 +288,17 @@ fun HeaderSection(
 
 @Composable
 fun CategorySection(
-    categories: List<com.myshop.cafe.data.models.MenuCategory>,
+    categories: ImmutableList<MenuCategoryUi>,
     selectedCategoryId: String?,
-    onCategorySelect: (String) -> Unit
+    onCategorySelect: (String) -> Unit,
+    modifier: Modifier = Modifier
 ) {
     LazyRow(
+        modifier = modifier,
         contentPadding = PaddingValues(horizontal = 24.dp),
         horizontalArrangement = Arrangement.spacedBy(24.dp)
     ) {
-        items(categories) { category ->
+        items(categories, key = { it.id }) { category ->
             val isSelected = category.id == selectedCategoryId
             
             Column(
@@ -302,38 +328,92 @@ fun CategorySection(
     }
 }
 
+/**
+ * Horizontal scrolling product cards (2 visible at a time like mockup),
+ * keyed by item id so cards keep their state when the filter changes.
+ */
 @Composable
-fun ProductGridSection(
-    items: List<MenuItem>,
+fun ProductCarousel(
+    items: ImmutableList<MenuItemUi>,
     onItemClick: (MenuItem) -> Unit,
-    onQuickAdd: (MenuItem) -> Unit
+    onQuickAdd: (MenuItem) -> Unit,
+    modifier: Modifier = Modifier,
+    state: LazyListState = rememberLazyListState()
 ) {
-    // Horizontal scrolling product cards (2 visible at a time like mockup)
     LazyRow(
+        modifier = modifier,
+        state = state,
         contentPadding = PaddingValues(horizontal = 24.dp),
         horizontalArrangement = Arrangement.spacedBy(16.dp)
     ) {
-        items(items) { item ->
+        items(
+            items = items,
+            key = { it.id },
+            contentType = { "product" }
+        ) { item ->
             ProductCard(
-                item = item,
-                onItemClick = { onItemClick(item) },
-                onQuickAdd = { onQuickAdd(item) }
+                product = item,
+                onItemClick = { onItemClick(item.item) },
+                onQuickAdd = { onQuickAdd(item.item) }
             )
         }
     }
 }
 
+/**
+ * Warms the image disk cache for the next cards past the end of the
+ * carousel, so cards scrolling into view find their thumbnails already
+ * downloaded.
+ */
+@Composable
+private fun PrefetchProductImages(
+    rowState: LazyListState,
+    items: ImmutableList<MenuItemUi>
+) {
+    val context = LocalContext.current
+    val widthPx = with(LocalDensity.current) { PRODUCT_IMAGE_WIDTH.roundToPx() }
+    
+    LaunchedEffect(rowState, items, widthPx) {
+        var prefetchedUntil = 0
+        snapshotFlow { rowState.layoutInfo.visibleItemsInfo.lastOrNull()?.index ?: 0 }
+            .map { lastVisible -> lastVisible + 1 }
+            .distinctUntilChanged()
+            .collect { firstHidden ->
+                val from = maxOf(firstHidden, prefetchedUntil)
+                val end = minOf(firstHidden + PREFETCH_ITEM_COUNT, items.size)
+                for (index in from until end) {
+                    val item = items[index].item
+                    val url = ImageUrlUtil.sized(item.imageUrl ?: getCoffeeImageUrl(item.name), widthPx)
+                    // Disk only: the card decodes at its own size when it is composed
+                    context.imageLoader.enqueue(
+                        ImageRequest.Builder(context)
+                            .data(url)
+                            .memoryCachePolicy(CachePolicy.DISABLED)
+                            .build()
+                    )
+                }
+                prefetchedUntil = maxOf(prefetchedUntil, end)
+            }
+    }
+}
+
+private val PRODUCT_CARD_WIDTH = 160.dp
+// Width of a card's image: the fixed card width less its 12dp padding on both sides
+private val PRODUCT_IMAGE_WIDTH = PRODUCT_CARD_WIDTH - 24.dp
+private const val PREFETCH_ITEM_COUNT = 6
+
 @Composable
 fun ProductCard(
-    item: MenuItem,
+    product: MenuItemUi,
     onItemClick: () -> Unit,
-    onQuickAdd: () -> Unit
+    onQuickAdd: () -> Unit,
+    modifier: Modifier = Modifier
 ) {
-    val cardWidth = 160.dp
+    val item = product.item
     
     Surface(
-        modifier = Modifier
-            .width(cardWidth)
+        modifier = modifier
+            .width(PRODUCT_CARD_WIDTH)
             .bouncyClick { onItemClick() },
         shape = RoundedCornerShape(20.dp),
         color = CardDark
@@ -348,7 +428,10 @@ fun ProductCard(
                     .height(130.dp)
             ) {
                 AsyncImage(
-                    model = item.imageUrl ?: getCoffeeImageUrl(item.name),
+                    model = rememberSizedImageUrl(
+                        url = item.imageUrl ?: getCoffeeImageUrl(item.name),
+                        width = PRODUCT_IMAGE_WIDTH
+                    ),
                     contentDescription = item.name,
                     contentScale = ContentScale.Crop,
                     modifier = Modifier
@@ -416,7 +499,7 @@ fun ProductCard(
                 verticalAlignment = Alignment.CenterVertically
             ) {
                 Text(
-                    text = "$${String.format("%.2f", item.basePrice)}",
+                    text = product.priceLabel,
                     style = MaterialTheme.typography.titleMedium,
                     color = TextLight,
                     fontWeight = FontWeight.Bold,
@@ -445,9 +528,12 @@ fun ProductCard(
 }
 
 @Composable
-fun SpecialForYouSection(items: List<MenuItem>) {
+fun SpecialForYouSection(
+    item: MenuItemUi?,
+    modifier: Modifier = Modifier
+) {
     Column(
-        modifier = Modifier.padding(horizontal = 24.dp)
+        modifier = modifier.padding(horizontal = 24.dp)
     ) {
         Text(
             text = "Special for you",
@@ -473,8 +559,11 @@ fun SpecialForYouSection(items: List<MenuItem>) {
             ) {
                 // Image
                 AsyncImage(
-                    model = items.firstOrNull()?.imageUrl 
-                        ?: "https://images.unsplash.com/photo-1461023058943-07fcbe16d735?w=400",
+                    model = rememberSizedImageUrl(
+                        url = item?.item?.imageUrl
+                            ?: "https://images.unsplash.com/photo-1461023058943-07fcbe16d735?w=400",
+                        width = 90.dp
+                    ),
                     contentDescription = null,
                     contentScale = ContentScale.Crop,
                     modifier = Modifier
@@ -551,7 +640,10 @@ fun ItemDetailSheet(
                     .padding(horizontal = 24.dp)
             ) {
                 AsyncImage(
-                    model = item.imageUrl ?: getCoffeeImageUrl(item.name),
+                    model = rememberSizedImageUrl(
+                        url = item.imageUrl ?: getCoffeeImageUrl(item.name),
+                        width = LocalConfiguration.current.screenWidthDp.dp
+                    ),
                     contentDescription = null,
                     contentScale = ContentScale.Crop,
                     modifier = Modifier
@@ -653,11 +745,7 @@ fun ItemDetailSheet(
                 Spacer(modifier = Modifier.height(32.dp))
                 
                 // Price and Add to Cart
-                val displayPrice = when (selectedSize) {
-                    Size.SMALL -> item.basePrice
-                    Size.MEDIUM -> item.priceMedium ?: (item.basePrice + 0.50)
-                    Size.LARGE -> item.priceLarge ?: (item.basePrice + 1.00)
-                }
+                val displayPrice = item.priceFor(selectedSize)
                 
                 Row(
                     modifier = Modifier.fillMaxWidth(),
@@ -667,7 +755,7 @@ fun ItemDetailSheet(
                     Column {
                         Text("Price", color = TextGray, fontSize = 14.sp)
                         Text(
-                            text = "$${String.format("%.2f", displayPrice)}",
+                            text = displayPrice.format(),
                             style = MaterialTheme.typography.headlineSmall,
                             color = BrownLight,
                             fontWeight = FontWeight.Bold
@@ -0,0 +1,118 @@
+package com.myshop.cafe.ui.screens.menu
+
+import java.text.Normalizer
+
+/**
+ * N-gram index over the menu's name, Khmer name and description.
+ * Built once per menu load; a query intersects the posting lists of its
+ * n-grams and only verifies the few candidates that survive.
+ */
+class MenuSearchIndex(private val items: List<MenuItemUi>) {
+
+    private class Entry(val name: String, val nameKh: String, val description: String)
+
+    private val entries = items.map { ui ->
+        Entry(
+            name = normalize(ui.item.name),
+            nameKh = normalize(ui.item.nameKh.orEmpty()),
+            description = normalize(ui.item.description.orEmpty())
+        )
+    }
+
+    // n-gram -> ascending item positions, for every gram length up to GRAM_SIZE
+    private val postings: Map<String, IntArray> = buildMap<String, MutableList<Int>> {
+        entries.forEachIndexed { position, entry ->
+            val grams = HashSet<String>()
+            for (field in arrayOf(entry.name, entry.nameKh, entry.description)) {
+                for (size in 1..GRAM_SIZE) {
+                    for (start in 0..field.length - size) grams.add(field.substring(start, start + size))
+                }
+            }
+            for (gram in grams) getOrPut(gram) { mutableListOf() }.add(position)
+        }
+    }.mapValues { (_, positions) -> positions.toIntArray() }
+
+    /**
+     * Items matching [query], best first: name prefix, then a word in the
+     * name, then anywhere in the name, the Khmer name and the description.
+     */
+    fun search(query: String): List<MenuItemUi> {
+        val needle = normalize(query)
+        if (needle.isEmpty()) return emptyList()
+
+        val candidates = candidatesFor(needle) ?: return emptyList()
+        val ranked = ArrayList<Pair<Int, Int>>(candidates.size)
+        for (position in candidates) {
+            val rank = rank(entries[position], needle)
+            if (rank != NO_MATCH) ranked.add(rank to position)
+        }
+        ranked.sortWith(compareBy({ it.first }, { it.second }))
+        return ranked.map { items[it.second] }
+    }
+
+    private fun candidatesFor(needle: String): IntArray? {
+        if (needle.length <= GRAM_SIZE) return postings[needle]
+
+        // Intersect the rarest grams first so the working set shrinks fastest
+        val lists = (0..needle.length - GRAM_SIZE)
+            .map { postings[needle.substring(it, it + GRAM_SIZE)] ?: return null }
+            .sortedBy { it.size }
+        var result = lists.first()
+        for (i in 1 until lists.size) {
+            result = intersect(result, lists[i])
+            if (result.isEmpty()) return null
+        }
+        return result
+    }
+
+    private fun rank(entry: Entry, needle: String): Int = when {
+        entry.name.startsWith(needle) -> 0
+        entry.name.contains(" $needle") -> 1
+        entry.name.contains(needle) -> 2
+        entry.nameKh.contains(needle) -> 3
+        entry.description.contains(needle) -> 4
+        else -> NO_MATCH
+    }
+
+    companion object {
+        private const val GRAM_SIZE = 3
+        private const val NO_MATCH = -1
+
+        // Zero-width space and joiners are common inside Khmer words and carry no meaning for search
+        private val IGNORED_CHARS = Regex("[\\u200B\\u200C\\u200D\\uFEFF]")
+        private val WHITESPACE = Regex("\\s+")
+
+        val EMPTY = MenuSearchIndex(emptyList())
+
+        /**
+         * Folds text into one canonical form: NFC composed, lowercase,
+         * without zero-width characters and with collapsed whitespace, so
+         * Khmer typed with different keyboards still compares equal.
+         */
+        fun normalize(text: String): String =
+            Normalizer.normalize(text, Normalizer.Form.NFC)
+                .replace(IGNORED_CHARS, "")
+                .lowercase()
+                .replace(WHITESPACE, " ")
+                .trim()
+
+        private fun intersect(a: IntArray, b: IntArray): IntArray {
+            val result = IntArray(minOf(a.size, b.size))
+            var i = 0
+            var j = 0
+            var count = 0
+            while (i < a.size && j < b.size) {
+                when {
+                    a[i] < b[j] -> i++
+                    a[i] > b[j] -> j++
+                    else -> {
+                        result[count++] = a[i]
+                        i++
+                        j++
+                    }
+                }
+            }
+            return result.copyOf(count)
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.myshop.cafe.ui.screens.menu
+
+import androidx.compose.runtime.Immutable
+import com.myshop.cafe.data.models.MenuCategory
+import com.myshop.cafe.data.models.MenuItem
+import com.myshop.cafe.data.models.Money
+import kotlinx.collections.immutable.ImmutableList
+import kotlinx.collections.immutable.ImmutableMap
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.collections.immutable.persistentMapOf
+import kotlinx.collections.immutable.toImmutableList
+import kotlinx.collections.immutable.toImmutableMap
+
+/**
+ * A menu item as the menu screen draws it. The wrapped [MenuItem] is never
+ * mutated, and the price label is formatted once per menu load.
+ */
+@Immutable
+data class MenuItemUi(
+    val item: MenuItem,
+    val priceLabel: String
+) {
+    val id: String get() = item.id
+}
+
+@Immutable
+data class MenuCategoryUi(
+    val id: String,
+    val name: String,
+    val items: ImmutableList<MenuItemUi>
+)
+
+/**
+ * The whole menu prepared for display: categories in order plus a lookup
+ * from category id to its items, built once whenever the menu changes.
+ */
+@Immutable
+data class MenuModel(
+    val categories: ImmutableList<MenuCategoryUi>,
+    val itemsByCategory: ImmutableMap<String, ImmutableList<MenuItemUi>>,
+    val allItems: ImmutableList<MenuItemUi>,
+    val specialItem: MenuItemUi?
+) {
+    fun itemsFor(categoryId: String?): ImmutableList<MenuItemUi> =
+        categoryId?.let { itemsByCategory[it] } ?: persistentListOf()
+
+    companion object {
+        val EMPTY = MenuModel(persistentListOf(), persistentMapOf(), persistentListOf(), null)
+
+        fun from(categories: List<MenuCategory>): MenuModel {
+            val uiCategories = categories.map { category ->
+                MenuCategoryUi(
+                    id = category.id,
+                    name = category.name,
+                    items = category.items.orEmpty().map { it.toUi() }.toImmutableList()
+                )
+            }
+            val allItems = uiCategories.flatMap { it.items }.toImmutableList()
+            return MenuModel(
+                categories = uiCategories.toImmutableList(),
+                itemsByCategory = uiCategories.associate { it.id to it.items }.toImmutableMap(),
+                allItems = allItems,
+                specialItem = allItems.firstOrNull()
+            )
+        }
+
+        private fun MenuItem.toUi() = MenuItemUi(
+            item = this,
+            priceLabel = Money.ofDollars(basePrice).format()
+        )
+    }
+}
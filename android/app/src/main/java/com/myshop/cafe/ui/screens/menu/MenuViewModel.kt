@@ -4,28 +4,39 @@ import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.myshop.cafe.data.models.MenuCategory
 import com.myshop.cafe.data.models.MenuItem
+import com.myshop.cafe.data.models.Money
 import com.myshop.cafe.data.models.Size
 import com.myshop.cafe.data.repository.CartRepository
 import com.myshop.cafe.data.repository.MenuRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.FlowPreview
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.debounce
+import kotlinx.coroutines.flow.mapLatest
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import kotlinx.collections.immutable.ImmutableList
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.collections.immutable.toImmutableList
 import javax.inject.Inject
 
 data class MenuUiState(
     val isLoading: Boolean = true,
-    val categories: List<MenuCategory> = emptyList(),
+    val menu: MenuModel = MenuModel.EMPTY,
     val selectedCategoryId: String? = null,
     val error: String? = null,
     val cartItemCount: Int = 0,
-    val cartTotal: Double = 0.0,
+    val cartTotal: Money = Money.ZERO,
     val selectedItem: MenuItem? = null,
     val showToast: String? = null,
     val searchQuery: String = "",
     val showScannerDialog: Boolean = false,
-    val filteredItems: List<MenuItem> = emptyList()
+    val filteredItems: ImmutableList<MenuItemUi> = persistentListOf()
 )
 
 @HiltViewModel
@@ -36,18 +47,42 @@ class MenuViewModel @Inject constructor(
     
     private val _uiState = MutableStateFlow(MenuUiState())
     val uiState: StateFlow<MenuUiState> = _uiState.asStateFlow()
+
+    private val searchQuery = MutableStateFlow("")
+    private val searchIndex = MutableStateFlow(MenuSearchIndex.EMPTY)
+    private var searchResults: ImmutableList<MenuItemUi>? = null
     
     init {
         loadMenu()
         observeCart()
+        observeSearch()
+    }
+
+    @OptIn(FlowPreview::class, ExperimentalCoroutinesApi::class)
+    private fun observeSearch() {
+        viewModelScope.launch {
+            // Wait for typing to settle, then query the index off the main thread
+            combine(
+                searchQuery.debounce { if (it.isBlank()) 0L else SEARCH_DEBOUNCE_MS },
+                searchIndex
+            ) { query, index -> query to index }
+                .mapLatest { (query, index) ->
+                    if (query.isBlank()) null
+                    else withContext(Dispatchers.Default) { index.search(query).toImmutableList() }
+                }
+                .collect { results ->
+                    searchResults = results
+                    updateFilteredItems()
+                }
+        }
     }
     
     private fun observeCart() {
         viewModelScope.launch {
-            cartRepository.cartItems.collect { items ->
+            cartRepository.summary.collect { summary ->
                 _uiState.value = _uiState.value.copy(
-                    cartItemCount = items.sumOf { it.quantity },
-                    cartTotal = items.sumOf { it.totalPrice }
+                    cartItemCount = summary.itemCount,
+                    cartTotal = summary.subtotal
                 )
             }
         }
@@ -55,27 +90,46 @@ class MenuViewModel @Inject constructor(
     
     fun loadMenu() {
         viewModelScope.launch {
-            _uiState.value = _uiState.value.copy(isLoading = true, error = null)
+            // Render the last known menu straight away, then revalidate against the network
+            if (_uiState.value.menu.categories.isEmpty()) {
+                menuRepository.getCachedCategoriesWithItems()
+                    ?.takeIf { it.isNotEmpty() }
+                    ?.let { showCategories(it) }
+            }
+            
+            val hasMenu = _uiState.value.menu.categories.isNotEmpty()
+            _uiState.value = _uiState.value.copy(isLoading = !hasMenu, error = null)
             
             menuRepository.getCategoriesWithItems()
                 .onSuccess { categories ->
-                    val selectedId = categories.firstOrNull()?.id
-                    _uiState.value = _uiState.value.copy(
-                        isLoading = false,
-                        categories = categories,
-                        selectedCategoryId = selectedId
-                    )
-                    updateFilteredItems()
+                    showCategories(categories)
                 }
                 .onFailure { error ->
                     _uiState.value = _uiState.value.copy(
                         isLoading = false,
-                        error = error.message ?: "Failed to load menu"
+                        error = if (hasMenu) null else error.message ?: "Failed to load menu"
                     )
                 }
         }
     }
     
+    private suspend fun showCategories(categories: List<MenuCategory>) {
+        // Group, format and index the menu once per change, off the main thread
+        val (menu, index) = withContext(Dispatchers.Default) {
+            val menu = MenuModel.from(categories)
+            menu to MenuSearchIndex(menu.allItems)
+        }
+        val currentId = _uiState.value.selectedCategoryId
+        val selectedId = currentId?.takeIf { it in menu.itemsByCategory } ?: menu.categories.firstOrNull()?.id
+        _uiState.value = _uiState.value.copy(
+            isLoading = false,
+            menu = menu,
+            selectedCategoryId = selectedId
+        )
+        updateFilteredItems()
+        searchIndex.value = index
+    }
+    
     fun selectCategory(categoryId: String) {
         _uiState.value = _uiState.value.copy(selectedCategoryId = categoryId)
         updateFilteredItems()
@@ -106,16 +160,16 @@ class MenuViewModel @Inject constructor(
 
     fun onSearchQueryChange(query: String) {
         _uiState.value = _uiState.value.copy(searchQuery = query)
-        updateFilteredItems()
+        searchQuery.value = query
     }
 
     private fun updateFilteredItems() {
         val state = _uiState.value
         val items = if (state.searchQuery.isBlank()) {
-            state.categories.find { it.id == state.selectedCategoryId }?.items ?: emptyList()
+            state.menu.itemsFor(state.selectedCategoryId)
         } else {
-            state.categories.flatMap { it.items ?: emptyList() }
-                .filter { it.name.contains(state.searchQuery, ignoreCase = true) }
+            // Keep the previous results on screen until the debounced search lands
+            searchResults ?: state.filteredItems
         }
         _uiState.value = _uiState.value.copy(filteredItems = items)
     }
@@ -123,4 +177,8 @@ class MenuViewModel @Inject constructor(
     fun toggleScanner(show: Boolean) {
         _uiState.value = _uiState.value.copy(showScannerDialog = show)
     }
+
+    private companion object {
+        const val SEARCH_DEBOUNCE_MS = 150L
+    }
 }
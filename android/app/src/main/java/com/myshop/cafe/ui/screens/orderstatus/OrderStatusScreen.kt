@@ -35,6 +35,7 @@ import androidx.compose.ui.graphics.Brush
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.graphics.vector.ImageVector
 import androidx.compose.ui.graphics.graphicsLayer
+import androidx.compose.ui.platform.LocalLifecycleOwner
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.input.ImeAction
@@ -42,7 +43,10 @@ import androidx.compose.ui.text.input.KeyboardType
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.repeatOnLifecycle
 import com.myshop.cafe.R
+import com.myshop.cafe.data.models.Money
 import com.myshop.cafe.data.models.Order
 import com.myshop.cafe.ui.theme.*
 import java.time.LocalDateTime
@@ -57,12 +61,17 @@ fun OrderStatusScreen(
     val uiState by viewModel.uiState.collectAsState()
     var isDarkTheme by remember { mutableStateOf(true) }
     
-    // Current time state for display
+    // Current time state for display, the clock shows minutes so tick on minute boundaries
+    // and only while the screen is started
     var currentTime by remember { mutableStateOf(LocalDateTime.now()) }
-    LaunchedEffect(Unit) {
-        while (true) {
-            currentTime = LocalDateTime.now()
-            kotlinx.coroutines.delay(1000)
+    val lifecycleOwner = LocalLifecycleOwner.current
+    LaunchedEffect(lifecycleOwner) {
+        lifecycleOwner.repeatOnLifecycle(Lifecycle.State.STARTED) {
+            while (true) {
+                val now = LocalDateTime.now()
+                currentTime = now
+                kotlinx.coroutines.delay((60 - now.second) * 1000L - now.nano / 1_000_000)
+            }
         }
     }
     
@@ -564,7 +573,7 @@ fun CustomerOrderCard(
             val priceText = if (order.totalUsd == null || order.totalUsd.isNaN()) {
                 "Price TBD"
             } else {
-                "$${String.format("%.2f", order.totalUsd)}"
+                Money.ofDollars(order.totalUsd).format()
             }
             
             Text(
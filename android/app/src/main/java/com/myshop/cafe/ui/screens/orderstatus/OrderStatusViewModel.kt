@@ -3,14 +3,13 @@ package com.myshop.cafe.ui.screens.orderstatus
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.myshop.cafe.data.models.Order
+import com.myshop.cafe.data.polling.PollingScheduler
 import com.myshop.cafe.data.repository.OrderRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.Job
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
-import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 import javax.inject.Inject
 
@@ -26,18 +25,19 @@ data class OrderStatusUiState(
 
 @HiltViewModel
 class OrderStatusViewModel @Inject constructor(
-    private val orderRepository: OrderRepository
+    private val orderRepository: OrderRepository,
+    private val pollingScheduler: PollingScheduler
 ) : ViewModel() {
     
     private val _uiState = MutableStateFlow(OrderStatusUiState())
     val uiState: StateFlow<OrderStatusUiState> = _uiState.asStateFlow()
     
-    private var pollingJob: Job? = null
-    private var customerPollingJob: Job? = null
+    private var queueJob: Job? = null
+    private var customerEventsJob: Job? = null
     
     init {
         loadOrderQueue()
-        startPolling()
+        pollQueue()
     }
     
     fun setPhoneNumber(phone: String) {
@@ -58,7 +58,7 @@ class OrderStatusViewModel @Inject constructor(
                         searchedPhone = phone,
                         customerOrders = orders
                     )
-                    startCustomerPolling(phone)
+                    observeCustomerEvents(phone)
                 }
                 .onFailure { error ->
                     _uiState.value = _uiState.value.copy(
@@ -89,28 +89,33 @@ class OrderStatusViewModel @Inject constructor(
         }
     }
     
-    private fun startPolling() {
-        pollingJob?.cancel()
-        pollingJob = viewModelScope.launch {
-            while (isActive) {
-                delay(3000)
+    private fun pollQueue() {
+        queueJob?.cancel()
+        queueJob = viewModelScope.launch {
+            // The stream of every order is staff-only, so the public queue is polled
+            pollingScheduler.poll(key = "queue", intervalMs = QUEUE_POLL_INTERVAL_MS) {
                 orderRepository.getOrdersQueue()
-                    .onSuccess { orders ->
-                        _uiState.value = _uiState.value.copy(allOrders = orders)
-                    }
+            }.collect { orders ->
+                _uiState.value = _uiState.value.copy(allOrders = orders)
             }
         }
     }
     
-    private fun startCustomerPolling(phone: String) {
-        customerPollingJob?.cancel()
-        customerPollingJob = viewModelScope.launch {
-            while (isActive) {
-                delay(5000)
-                orderRepository.getCustomerOrders(phone)
-                    .onSuccess { orders ->
-                        _uiState.value = _uiState.value.copy(customerOrders = orders)
-                    }
+    private fun observeCustomerEvents(phone: String) {
+        customerEventsJob?.cancel()
+        customerEventsJob = viewModelScope.launch {
+            orderRepository.orderEvents(phone).collect { event ->
+                val orders = _uiState.value.customerOrders
+                if (orders.any { it.id == event.id }) {
+                    _uiState.value = _uiState.value.copy(
+                        customerOrders = orders.map { if (it.id == event.id) it.copy(status = event.status) else it }
+                    )
+                } else {
+                    orderRepository.getCustomerOrders(phone)
+                        .onSuccess { refreshed ->
+                            _uiState.value = _uiState.value.copy(customerOrders = refreshed)
+                        }
+                }
             }
         }
     }
@@ -121,7 +126,11 @@ class OrderStatusViewModel @Inject constructor(
     
     override fun onCleared() {
         super.onCleared()
-        pollingJob?.cancel()
-        customerPollingJob?.cancel()
+        queueJob?.cancel()
+        customerEventsJob?.cancel()
+    }
+    
+    private companion object {
+        const val QUEUE_POLL_INTERVAL_MS = 5000L
     }
 }
@@ -0,0 +1,28 @@
+package com.myshop.cafe.utils
+
+import java.security.MessageDigest
+
+object HashUtil {
+
+    private val HEX_DIGITS = "0123456789abcdef".toCharArray()
+
+    // MessageDigest is not thread-safe, keep one per thread instead of looking one up per call
+    private val md5Digest = ThreadLocal.withInitial { MessageDigest.getInstance("MD5") }
+
+    /**
+     * MD5 of the UTF-8 bytes of [input] as lowercase hex, the form Bakong
+     * uses to key KHQR transactions.
+     */
+    fun md5Hex(input: String): String =
+        toHex(md5Digest.get()!!.digest(input.toByteArray(Charsets.UTF_8)))
+
+    fun toHex(bytes: ByteArray): String {
+        val chars = CharArray(bytes.size * 2)
+        for (i in bytes.indices) {
+            val value = bytes[i].toInt() and 0xFF
+            chars[i * 2] = HEX_DIGITS[value ushr 4]
+            chars[i * 2 + 1] = HEX_DIGITS[value and 0x0F]
+        }
+        return String(chars)
+    }
+}
@@ -0,0 +1,30 @@
+package com.myshop.cafe.utils
+
+object ImageUrlUtil {
+
+    // Fixed width buckets so nearby sizes share one cached variant. The first three
+    // are pre-rendered at upload time (see frontend lib/imageVariants.ts)
+    private val WIDTHS = intArrayOf(128, 256, 512, 1024)
+
+    private const val CLOUDINARY_UPLOAD = "/image/upload/"
+    private val UNSPLASH_WIDTH = Regex("([?&])w=\\d+")
+
+    fun bucketWidth(widthPx: Int): Int = WIDTHS.firstOrNull { it >= widthPx } ?: WIDTHS.last()
+
+    /**
+     * Rewrites an image URL to ask the host for a copy no wider than the
+     * bucket covering [widthPx]. Hosts that cannot resize are left as is.
+     */
+    fun sized(url: String, widthPx: Int): String {
+        val width = bucketWidth(widthPx)
+        return when {
+            // Same transformation the upload route renders eagerly, so thumbnails are served from storage
+            url.contains("res.cloudinary.com") && url.contains(CLOUDINARY_UPLOAD) ->
+                url.replaceFirst(CLOUDINARY_UPLOAD, "${CLOUDINARY_UPLOAD}c_limit,q_auto,w_$width/")
+            url.contains("images.unsplash.com") ->
+                if (UNSPLASH_WIDTH.containsMatchIn(url)) url.replace(UNSPLASH_WIDTH, "$1w=$width")
+                else url + (if ('?' in url) "&" else "?") + "w=$width"
+            else -> url
+        }
+    }
+}
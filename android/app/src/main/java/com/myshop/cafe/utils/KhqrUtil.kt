@@ -1,16 +1,17 @@
 package com.myshop.cafe.utils
 
-import android.graphics.Bitmap
-import android.graphics.Color
 import com.google.zxing.BarcodeFormat
 import com.google.zxing.MultiFormatWriter
 import com.google.zxing.common.BitMatrix
-import java.security.MessageDigest
+import com.myshop.cafe.data.models.Money
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.util.concurrent.ConcurrentHashMap
 
 object KhqrUtil {
 
     data class KhqrConfig(
-        val amount: Double,
+        val amount: Money,
         val currency: String = "USD", // USD or KHR
         val merchantName: String,
         val accountNumber: String,
@@ -18,106 +19,224 @@ object KhqrUtil {
         val billNumber: String? = null
     )
 
-    private fun formatTlv(tag: String, value: String): String {
-        val length = value.length.toString().padStart(2, '0')
-        return "$tag$length$value"
-    }
-
     /**
-     * CRC16-CCITT implementation for KHQR
+     * A decoded KHQR payload. Tags keep their payload order; nested
+     * templates such as 29 and 62 can be split further with [parseTlv].
      */
-    private fun calculateCrc16(data: String): String {
-        var crc = 0xFFFF
-        for (char in data) {
-            val byte = char.code
-            crc = crc xor (byte shl 8)
-            for (i in 0 until 8) {
-                if ((crc and 0x8000) != 0) {
-                    crc = (crc shl 1) xor 0x1021
-                } else {
-                    crc = crc shl 1
-                }
-            }
+    data class KhqrPayload(
+        val tags: Map<String, String>,
+        val isCrcValid: Boolean
+    ) {
+        val amount: String? get() = tags[TAG_AMOUNT]
+        val currencyCode: String? get() = tags[TAG_CURRENCY]
+        val merchantName: String? get() = tags[TAG_MERCHANT_NAME]
+        val billNumber: String? get() = tags[TAG_ADDITIONAL_DATA]?.let { parseTlv(it)?.get("01") }
+    }
+
+    private const val TAG_AMOUNT = "54"
+    private const val TAG_CURRENCY = "53"
+    private const val TAG_MERCHANT_NAME = "59"
+    private const val TAG_ADDITIONAL_DATA = "62"
+    private const val TAG_CRC = "63"
+    private const val STORE_MOBILE_NUMBER = "078211599"
+
+    private val HEX_DIGITS = "0123456789ABCDEF".toCharArray()
+
+    // CRC16-CCITT (poly 0x1021) for every possible high byte, one lookup per char
+    private val CRC16_TABLE = IntArray(256) { index ->
+        var crc = index shl 8
+        repeat(8) {
+            crc = if ((crc and 0x8000) != 0) (crc shl 1) xor 0x1021 else crc shl 1
         }
-        return (crc and 0xFFFF).toString(16).uppercase().padStart(4, '0')
+        crc and 0xFFFF
     }
 
+    // One builder per thread, reused across payloads instead of concatenating strings
+    private val payloadBuilder = ThreadLocal.withInitial { StringBuilder(192) }
+
     /**
-     * Generates a KHQR string following the BSTHEN pattern (Manual Tag Builder)
+     * CRC16-CCITT implementation for KHQR. Like the web builder in
+     * khqr.util.ts only the low byte of each char takes part.
      */
-    fun generateKhqr(config: KhqrConfig): String {
-        var khqr = ""
-
-        // Tag 00: Payload Format Indicator
-        khqr += formatTlv("00", "01")
+    private fun calculateCrc16(data: CharSequence, initial: Int = 0xFFFF): Int {
+        var crc = initial
+        for (i in 0 until data.length) {
+            val index = ((crc ushr 8) xor data[i].code) and 0xFF
+            crc = ((crc shl 8) xor CRC16_TABLE[index]) and 0xFFFF
+        }
+        return crc
+    }
 
-        // Tag 01: Point of Initiation Method (11 for Static, 12 for Dynamic)
-        val isDynamic = config.amount > 0
-        khqr += formatTlv("01", if (isDynamic) "12" else "11")
+    private fun StringBuilder.appendLength(length: Int): StringBuilder {
+        require(length in 0..99) { "KHQR field too long: $length" }
+        return append((length / 10).digitToChar()).append((length % 10).digitToChar())
+    }
 
-        // Tag 29: Merchant Account Information (Individual)
-        val tag29Value = formatTlv("00", config.accountNumber)
-        khqr += formatTlv("29", tag29Value)
+    private fun StringBuilder.appendTlv(tag: String, value: CharSequence): StringBuilder =
+        append(tag).appendLength(value.length).append(value)
 
-        // Tag 52: Merchant Category Code
-        khqr += formatTlv("52", "5999")
+    private fun StringBuilder.appendHex4(value: Int): StringBuilder {
+        var shift = 12
+        while (shift >= 0) {
+            append(HEX_DIGITS[(value shr shift) and 0xF])
+            shift -= 4
+        }
+        return this
+    }
 
-        // Tag 53: Transaction Currency (840 for USD, 116 for KHR)
-        khqr += formatTlv("53", if (config.currency == "USD") "840" else "116")
+    private fun tlvLength(value: CharSequence) = 4 + value.length
 
-        // Tag 54: Transaction Amount
-        if (isDynamic) {
-            khqr += formatTlv("54", String.format("%.2f", config.amount))
-        }
+    /**
+     * Pre-encoded merchant fields for one account. Tags 00 through 53 are
+     * built once per point of initiation together with their CRC state, and
+     * the static tags that follow the amount are kept as ready strings, so a
+     * payment only appends the amount and bill number and finishes the CRC.
+     */
+    class KhqrTemplate(
+        merchantName: String,
+        accountNumber: String,
+        merchantCity: String = "PHNOM PENH",
+        currency: String = "USD"
+    ) {
+        private val isKhr = currency == "KHR"
+        private val staticPrefix = encodePrefix(isDynamic = false, accountNumber, currency)
+        private val dynamicPrefix = encodePrefix(isDynamic = true, accountNumber, currency)
+        private val staticPrefixCrc = calculateCrc16(staticPrefix)
+        private val dynamicPrefixCrc = calculateCrc16(dynamicPrefix)
+
+        // Tags 58 to 60 never change for a merchant
+        private val merchantTags = StringBuilder()
+            .appendTlv("58", "KH")
+            .appendTlv(TAG_MERCHANT_NAME, merchantName)
+            .appendTlv("60", merchantCity)
+            .toString()
+
+        // Tag 62 sub-fields after the bill number: mobile number and store label
+        private val storeTags = StringBuilder()
+            .appendTlv("02", STORE_MOBILE_NUMBER)
+            .appendTlv("03", merchantName)
+            .toString()
+
+        fun build(amount: Money, billNumber: String? = null): String {
+            val isDynamic = amount.isPositive
+            val khqr = payloadBuilder.get()!!
+            khqr.setLength(0)
+
+            // Tag 54: Transaction Amount
+            if (isDynamic) {
+                // Exact cents for USD, whole riel at the shop rate for KHR, like the web builder
+                khqr.appendTlv(TAG_AMOUNT, if (isKhr) amount.toKhr().toString() else amount.toPlainString())
+            }
 
-        // Tag 58: Country Code
-        khqr += formatTlv("58", "KH")
+            khqr.append(merchantTags)
 
-        // Tag 59: Merchant Name
-        khqr += formatTlv("59", config.merchantName)
+            // Tag 62: Additional Data Field Template, an empty bill number is left out like on the web
+            val bill = billNumber?.takeIf { it.isNotEmpty() }
+            val tag62Length = (bill?.let { tlvLength(it) } ?: 0) + storeTags.length
+            khqr.append(TAG_ADDITIONAL_DATA).appendLength(tag62Length)
+            if (bill != null) khqr.appendTlv("01", bill)
+            khqr.append(storeTags)
 
-        // Tag 60: Merchant City
-        khqr += formatTlv("60", config.merchantCity)
+            // Final Tag 63: CRC, continued from the prefix state
+            khqr.append(TAG_CRC).append("04")
+            val crc = calculateCrc16(khqr, if (isDynamic) dynamicPrefixCrc else staticPrefixCrc)
+            khqr.appendHex4(crc)
 
-        // Tag 62: Additional Data Field Template
-        var tag62Value = ""
-        if (config.billNumber != null) tag62Value += formatTlv("01", config.billNumber)
-        tag62Value += formatTlv("02", "078211599") // Mobile Number
-        tag62Value += formatTlv("03", config.merchantName) // Store Label
+            val prefix = if (isDynamic) dynamicPrefix else staticPrefix
+            return StringBuilder(prefix.length + khqr.length).append(prefix).append(khqr).toString()
+        }
 
-        if (tag62Value.isNotEmpty()) {
-            khqr += formatTlv("62", tag62Value)
+        private companion object {
+            fun encodePrefix(isDynamic: Boolean, accountNumber: String, currency: String): String =
+                StringBuilder()
+                    // Tag 00: Payload Format Indicator
+                    .appendTlv("00", "01")
+                    // Tag 01: Point of Initiation Method (11 for Static, 12 for Dynamic)
+                    .appendTlv("01", if (isDynamic) "12" else "11")
+                    // Tag 29: Merchant Account Information (Individual)
+                    .append("29").appendLength(tlvLength(accountNumber))
+                    .appendTlv("00", accountNumber)
+                    // Tag 52: Merchant Category Code
+                    .appendTlv("52", "5999")
+                    // Tag 53: Transaction Currency (840 for USD, 116 for KHR)
+                    .appendTlv(TAG_CURRENCY, if (currency == "USD") "840" else "116")
+                    .toString()
         }
+    }
+
+    private data class TemplateKey(
+        val merchantName: String,
+        val accountNumber: String,
+        val merchantCity: String,
+        val currency: String
+    )
 
-        // Final Tag 63: CRC
-        khqr += "6304"
-        khqr += calculateCrc16(khqr)
+    // Templates for the merchants seen so far; a shop has one or two, so this stays tiny
+    private val templates = ConcurrentHashMap<TemplateKey, KhqrTemplate>()
+    private const val MAX_CACHED_TEMPLATES = 8
+
+    /**
+     * Generates a KHQR string following the BSTHEN pattern (Manual Tag Builder).
+     * The merchant part is encoded once per distinct merchant and reused.
+     */
+    fun generateKhqr(config: KhqrConfig): String {
+        val key = TemplateKey(config.merchantName, config.accountNumber, config.merchantCity, config.currency)
+        val template = templates[key] ?: KhqrTemplate(
+            merchantName = key.merchantName,
+            accountNumber = key.accountNumber,
+            merchantCity = key.merchantCity,
+            currency = key.currency
+        ).also {
+            if (templates.size >= MAX_CACHED_TEMPLATES) templates.clear()
+            templates[key] = it
+        }
+        return template.build(config.amount, config.billNumber)
+    }
 
-        return khqr
+    /**
+     * Splits a TLV sequence into tag/value pairs, or returns null if the
+     * lengths do not add up.
+     */
+    fun parseTlv(data: String): Map<String, String>? {
+        val tags = LinkedHashMap<String, String>()
+        var position = 0
+        while (position < data.length) {
+            if (position + 4 > data.length) return null
+            val length = data.substring(position + 2, position + 4).toIntOrNull() ?: return null
+            val end = position + 4 + length
+            if (end > data.length) return null
+            tags[data.substring(position, position + 2)] = data.substring(position + 4, end)
+            position = end
+        }
+        return tags
     }
 
-    fun generateMd5(input: String): String {
-        val bytes = MessageDigest.getInstance("MD5").digest(input.toByteArray())
-        return bytes.joinToString("") { "%02x".format(it) }
+    /**
+     * Decodes a KHQR string and checks its trailing CRC, for verifying
+     * payloads produced elsewhere against what this builder would emit.
+     */
+    fun parseKhqr(khqr: String): KhqrPayload? {
+        val tags = parseTlv(khqr) ?: return null
+        val crc = tags[TAG_CRC] ?: return KhqrPayload(tags, isCrcValid = false)
+
+        // The CRC covers everything up to and including "6304"
+        val covered = khqr.length - crc.length
+        val expected = calculateCrc16(khqr.subSequence(0, covered))
+        val isCrcValid = khqr.endsWith(crc) && crc.length == 4 &&
+            crc.toIntOrNull(16) == expected
+        return KhqrPayload(tags, isCrcValid)
     }
 
-    fun generateQrBitmap(content: String, size: Int = 512): Bitmap? {
-        return try {
-            val bitMatrix: BitMatrix = MultiFormatWriter().encode(
-                content,
-                BarcodeFormat.QR_CODE,
-                size,
-                size
-            )
-            val width = bitMatrix.width
-            val height = bitMatrix.height
-            val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565)
-            for (x in 0 until width) {
-                for (y in 0 until height) {
-                    bitmap.setPixel(x, y, if (bitMatrix[x, y]) Color.BLACK else Color.WHITE)
-                }
-            }
-            bitmap
+    fun generateMd5(input: String): String = HashUtil.md5Hex(input)
+
+    /**
+     * Encodes content into its QR module matrix, one entry per module
+     * including the quiet zone, for drawing with the QrCode composable.
+     */
+    suspend fun generateQrModules(content: String): BitMatrix? = withContext(Dispatchers.Default) {
+        try {
+            // Zero size asks ZXing for the matrix at module resolution
+            MultiFormatWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0)
         } catch (e: Exception) {
             e.printStackTrace()
             null
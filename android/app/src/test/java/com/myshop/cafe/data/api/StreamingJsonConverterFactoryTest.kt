@@ -0,0 +1,146 @@
+package com.myshop.cafe.data.api
+
+import com.myshop.cafe.data.models.CreateOrderItem
+import com.myshop.cafe.data.models.CreateOrderRequest
+import com.myshop.cafe.data.models.CreateOrderResponse
+import com.myshop.cafe.data.models.MenuCategoriesResponse
+import com.myshop.cafe.testing.Allocations
+import kotlinx.serialization.decodeFromString
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.RequestBody
+import okhttp3.ResponseBody.Companion.toResponseBody
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import retrofit2.Converter
+import retrofit2.Retrofit
+
+/**
+ * The streaming converter must decode exactly what the old String-buffering
+ * path (decodeFromString on the whole body) produced.
+ */
+class StreamingJsonConverterFactoryTest {
+
+    // Same configuration as NetworkModule
+    private val json = Json {
+        ignoreUnknownKeys = true
+        coerceInputValues = true
+        isLenient = true
+        allowSpecialFloatingPointValues = true
+    }
+
+    private val mediaType = "application/json".toMediaType()
+    private val factory = StreamingJsonConverterFactory(json, mediaType)
+    private val retrofit = Retrofit.Builder().baseUrl("http://localhost/").build()
+
+    private inline fun <reified T : Any> decodeStreaming(body: String): T {
+        val converter = factory.responseBodyConverter(T::class.java, emptyArray(), retrofit)
+        return converter.convert(body.toResponseBody(mediaType)) as T
+    }
+
+    @Test
+    fun menuResponseMatchesStringDecoding() {
+        val body = """
+            {"success":true,"data":[
+              {"id":"c1","name":"Coffee","name_kh":"កាហ្វេ","display_order":1,"items":[
+                {"id":"m1","name":"Latte","base_price":2.5,"price_medium":3.0,"price_large":null,
+                 "image_url":"https://res.cloudinary.com/demo/image/upload/latte.webp","unknown_field":42},
+                {"id":"m2","name":"Mocha","base_price":"3.25","is_available":false}
+              ]},
+              {"id":"c2","name":"Tea","items":[]}
+            ]}
+        """.trimIndent()
+
+        assertEquals(
+            json.decodeFromString<MenuCategoriesResponse>(body),
+            decodeStreaming<MenuCategoriesResponse>(body)
+        )
+    }
+
+    private fun largeMenuBody(): String {
+        val items = (1..2_000).joinToString(",") { index ->
+            """{"id":"m$index","name":"Item $index","description":"${"x".repeat(index % 50)}","base_price":${index % 7}.${index % 100}}"""
+        }
+        return """{"success":true,"data":[{"id":"c1","name":"All","items":[$items]}]}"""
+    }
+
+    @Test
+    fun largeMenuMatchesStringDecoding() {
+        val body = largeMenuBody()
+
+        val streamed = decodeStreaming<MenuCategoriesResponse>(body)
+
+        assertEquals(json.decodeFromString<MenuCategoriesResponse>(body), streamed)
+        assertEquals(2_000, streamed.data!!.single().items!!.size)
+    }
+
+    @Test
+    fun largeMenuAllocatesLessThanStringDecoding() {
+        val body = largeMenuBody()
+        val converter = factory.responseBodyConverter(MenuCategoriesResponse::class.java, emptyArray(), retrofit)
+
+        val streamed = Allocations.perCall(warmup = 20, runs = 50) {
+            converter.convert(body.toResponseBody(mediaType))
+        }
+        // What the String-buffering converter did: read the body into a String, then decode it
+        val buffered = Allocations.perCall(warmup = 20, runs = 50) {
+            json.decodeFromString<MenuCategoriesResponse>(body.toResponseBody(mediaType).string())
+        }
+
+        // The buffered path holds the body once as bytes and once more as a String
+        assertTrue(
+            "streamed $streamed B vs buffered $buffered B per ${body.length} B response",
+            streamed + body.length < buffered
+        )
+    }
+
+    @Test
+    fun orderResponseMatchesStringDecoding() {
+        val body = """
+            {"success":true,"data":{"message":"ok","order":{
+              "id":"o1","order_number":"CAFE-20260101-0001","status":"pending","total_usd":"7.50",
+              "items":[{"name":"Latte","size":"medium","quantity":2,"unit_price":3.75,"customizations":{}}],
+              "customer":{"id":"u1","phone":"012345678"}
+            }}}
+        """.trimIndent()
+
+        assertEquals(
+            json.decodeFromString<CreateOrderResponse>(body),
+            decodeStreaming<CreateOrderResponse>(body)
+        )
+    }
+
+    @Test
+    fun errorResponseMatchesStringDecoding() {
+        val body = """{"success":false,"message":"Unauthorized access"}"""
+
+        assertEquals(
+            json.decodeFromString<CreateOrderResponse>(body),
+            decodeStreaming<CreateOrderResponse>(body)
+        )
+    }
+
+    @Test
+    fun requestBodyMatchesStringEncoding() {
+        val request = CreateOrderRequest(
+            customerPhone = "012345678",
+            customerName = "Dara",
+            items = listOf(CreateOrderItem(menuItemId = "m1", size = "large", quantity = 2)),
+            orderType = "dine_in",
+            tableNumber = 4
+        )
+        val converter = factory.requestBodyConverter(
+            CreateOrderRequest::class.java, emptyArray(), emptyArray(), retrofit
+        )
+
+        @Suppress("UNCHECKED_CAST")
+        val body = (converter as Converter<CreateOrderRequest, RequestBody>).convert(request)!!
+        val buffer = Buffer().also { body.writeTo(it) }
+
+        assertEquals(json.encodeToString(request), buffer.readUtf8())
+        assertEquals(mediaType, body.contentType())
+    }
+}
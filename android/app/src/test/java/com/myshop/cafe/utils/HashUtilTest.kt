@@ -0,0 +1,77 @@
+package com.myshop.cafe.utils
+
+import com.myshop.cafe.testing.Allocations
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.security.MessageDigest
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import kotlin.random.Random
+
+/**
+ * md5Hex must produce the same digest as the old per-call path: a fresh
+ * MessageDigest per call and "%02x" formatting of every byte.
+ */
+class HashUtilTest {
+
+    private fun referenceMd5(input: String): String =
+        MessageDigest.getInstance("MD5").digest(input.toByteArray()).joinToString("") { "%02x".format(it) }
+
+    @Test
+    fun knownDigests() {
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", HashUtil.md5Hex(""))
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", HashUtil.md5Hex("abc"))
+        assertEquals("9e107d9d372bb6826bd81d3542a419d6", HashUtil.md5Hex("The quick brown fox jumps over the lazy dog"))
+    }
+
+    @Test
+    fun matchesMessageDigestForVariedInputs() {
+        val random = Random(42)
+        val inputs = buildList {
+            add("ហាងកាហ្វេ")
+            add("00020101021229190015lavin_mara@bkrt520459995303840540512.505802KH5907MY SHOP6010PHNOM PENH62400112CAFE1234567802090782115990307MY SHOP6304E497")
+            // Enough random inputs to hit every byte value in the digests, including those below 0x10
+            repeat(500) {
+                add(String(CharArray(random.nextInt(0, 300)) { random.nextInt(0x20, 0x7F).toChar() }))
+            }
+        }
+
+        for (input in inputs) {
+            assertEquals(input, referenceMd5(input), HashUtil.md5Hex(input))
+        }
+    }
+
+    @Test
+    fun toHexIsLowercaseAndPadded() {
+        assertEquals("00010f10ff", HashUtil.toHex(byteArrayOf(0x00, 0x01, 0x0F, 0x10, 0xFF.toByte())))
+        assertEquals("", HashUtil.toHex(ByteArray(0)))
+    }
+
+    @Test
+    fun md5HexAllocatesOnlyInputBytesAndResult() {
+        val payload = "00020101021229190015lavin_mara@bkrt520459995303840540512.505802KH5907MY SHOP6010PHNOM PENH62400112CAFE1234567802090782115990307MY SHOP6304E497"
+
+        val shared = Allocations.perCall { HashUtil.md5Hex(payload) }
+        val reference = Allocations.perCall { referenceMd5(payload) }
+
+        // The UTF-8 bytes, the 16-byte digest and the 32 hex chars; no digest or Formatter per call
+        assertTrue("md5Hex allocated $shared B for ${payload.length} chars", shared < payload.length + 256)
+        assertTrue("md5Hex $shared B vs reference $reference B per call", shared * 10 < reference)
+    }
+
+    @Test
+    fun concurrentCallsDoNotShareDigestState() {
+        val inputs = (0 until 2_000).map { "payload-$it" }
+        val executor = Executors.newFixedThreadPool(8)
+        try {
+            val results = executor.invokeAll(inputs.map { input -> Callable { input to HashUtil.md5Hex(input) } })
+            for (future in results) {
+                val (input, digest) = future.get()
+                assertEquals(input, referenceMd5(input), digest)
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+}
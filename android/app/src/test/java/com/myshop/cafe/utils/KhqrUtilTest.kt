@@ -0,0 +1,249 @@
+package com.myshop.cafe.utils
+
+import com.myshop.cafe.data.models.Money
+import com.myshop.cafe.testing.Allocations
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Locale
+
+/**
+ * Golden vectors produced by generateKHQR in frontend/src/lib/khqr.util.ts.
+ * The app and the web must emit byte-identical payloads, CRC included, or
+ * Bakong lookups by MD5 stop matching.
+ */
+class KhqrUtilTest {
+
+    private class Vector(
+        val amount: Double,
+        val billNumber: String?,
+        val expected: String,
+        val merchantName: String = "MY SHOP",
+        val merchantCity: String = "PHNOM PENH"
+    )
+
+    private val vectors = mapOf(
+        "dynamic with bill number" to Vector(
+            12.5, "CAFE12345678",
+            "00020101021229190015lavin_mara@bkrt520459995303840540512.505802KH5907MY SHOP6010PHNOM PENH62400112CAFE1234567802090782115990307MY SHOP6304E497"
+        ),
+        "static without amount" to Vector(
+            0.0, null,
+            "00020101021129190015lavin_mara@bkrt5204599953038405802KH5907MY SHOP6010PHNOM PENH622402090782115990307MY SHOP63048850"
+        ),
+        "dynamic without bill number" to Vector(
+            5.0, null,
+            "00020101021229190015lavin_mara@bkrt52045999530384054045.005802KH5907MY SHOP6010PHNOM PENH622402090782115990307MY SHOP630477E8"
+        ),
+        "empty bill number is omitted" to Vector(
+            3.75, "",
+            "00020101021229190015lavin_mara@bkrt52045999530384054043.755802KH5907MY SHOP6010PHNOM PENH622402090782115990307MY SHOP6304EE19"
+        ),
+        "float sum rounds to cents" to Vector(
+            0.1 + 0.2, "CAFE00000001",
+            "00020101021229190015lavin_mara@bkrt52045999530384054040.305802KH5907MY SHOP6010PHNOM PENH62400112CAFE0000000102090782115990307MY SHOP63043660"
+        ),
+        "1.005 is just below the tie and rounds down" to Vector(
+            1.005, "CAFE00000002",
+            "00020101021229190015lavin_mara@bkrt52045999530384054041.005802KH5907MY SHOP6010PHNOM PENH62400112CAFE0000000202090782115990307MY SHOP63046D99"
+        ),
+        "0.015 is a tie in cents and rounds up" to Vector(
+            0.015, "CAFE00000003",
+            "00020101021229190015lavin_mara@bkrt52045999530384054040.025802KH5907MY SHOP6010PHNOM PENH62400112CAFE0000000302090782115990307MY SHOP6304CDEC"
+        ),
+        "rounds up into the next dollar" to Vector(
+            9.999, "CAFE00000004",
+            "00020101021229190015lavin_mara@bkrt520459995303840540510.005802KH5907MY SHOP6010PHNOM PENH62400112CAFE0000000402090782115990307MY SHOP6304A2B0"
+        ),
+        "large amount and long bill number" to Vector(
+            1234.5, "INV-2026-10-18-000012345",
+            "00020101021229190015lavin_mara@bkrt52045999530384054071234.505802KH5907MY SHOP6010PHNOM PENH62520124INV-2026-10-18-00001234502090782115990307MY SHOP6304EAA2"
+        ),
+        "khmer merchant name" to Vector(
+            2.25, "CAFE00000005",
+            "00020101021229190015lavin_mara@bkrt52045999530384054042.255802KH5909ហាងកាហ្វេ6010PHNOM PENH62420112CAFE0000000502090782115990309ហាងកាហ្វេ63048543",
+            merchantName = "ហាងកាហ្វេ"
+        ),
+        "other city" to Vector(
+            7.1, "CAFE00000006",
+            "00020101021229190015lavin_mara@bkrt52045999530384054047.105802KH5907MY SHOP6009SIEM REAP62400112CAFE0000000602090782115990307MY SHOP6304A758",
+            merchantCity = "SIEM REAP"
+        )
+    )
+
+    // Web payloads for generateKHQR({ currency: 'KHR', amount: usdToKhr(usd) }), keyed by the USD amount
+    private val khrVectors = mapOf(
+        "dynamic KHR with bill number" to Vector(
+            12.5, "CAFE12345678",
+            "00020101021229190015lavin_mara@bkrt5204599953031165405512505802KH5907MY SHOP6010PHNOM PENH62400112CAFE1234567802090782115990307MY SHOP63043AE6"
+        ),
+        "one cent is 41 riel" to Vector(
+            0.01, "CAFE00000007",
+            "00020101021229190015lavin_mara@bkrt5204599953031165402415802KH5907MY SHOP6010PHNOM PENH62400112CAFE0000000702090782115990307MY SHOP630445CD"
+        ),
+        "large KHR amount without bill number" to Vector(
+            1234.5, null,
+            "00020101021229190015lavin_mara@bkrt520459995303116540750614505802KH5907MY SHOP6010PHNOM PENH622402090782115990307MY SHOP63040A56"
+        ),
+        "odd cents" to Vector(
+            3.33, "CAFE00000008",
+            "00020101021229190015lavin_mara@bkrt5204599953031165405136535802KH5907MY SHOP6010PHNOM PENH62400112CAFE0000000802090782115990307MY SHOP63049292"
+        ),
+        "static KHR without amount" to Vector(
+            0.0, null,
+            "00020101021129190015lavin_mara@bkrt5204599953031165802KH5907MY SHOP6010PHNOM PENH622402090782115990307MY SHOP6304EF85"
+        )
+    )
+
+    private fun Vector.config() = KhqrUtil.KhqrConfig(
+        amount = Money.ofDollars(amount),
+        merchantName = merchantName,
+        accountNumber = ACCOUNT,
+        merchantCity = merchantCity,
+        billNumber = billNumber
+    )
+
+    @Test
+    fun generateKhqrMatchesWebBuilder() {
+        for ((name, vector) in vectors) {
+            assertEquals(name, vector.expected, KhqrUtil.generateKhqr(vector.config()))
+        }
+    }
+
+    @Test
+    fun templateMatchesWebBuilder() {
+        for ((name, vector) in vectors) {
+            val template = KhqrUtil.KhqrTemplate(
+                merchantName = vector.merchantName,
+                accountNumber = ACCOUNT,
+                merchantCity = vector.merchantCity
+            )
+            // Twice, so a reused builder or cached CRC state cannot leak between payloads
+            repeat(2) {
+                assertEquals(name, vector.expected, template.build(Money.ofDollars(vector.amount), vector.billNumber))
+            }
+        }
+    }
+
+    @Test
+    fun khrPayloadsMatchWebBuilder() {
+        val template = KhqrUtil.KhqrTemplate(merchantName = "MY SHOP", accountNumber = ACCOUNT, currency = "KHR")
+        for ((name, vector) in khrVectors) {
+            assertEquals(name, vector.expected, template.build(Money.ofDollars(vector.amount), vector.billNumber))
+            assertEquals(name, vector.expected, KhqrUtil.generateKhqr(vector.config().copy(currency = "KHR")))
+        }
+    }
+
+    @Test
+    fun khrAmountIsWholeRiel() {
+        for ((name, vector) in khrVectors) {
+            val payload = KhqrUtil.parseKhqr(vector.expected)!!
+
+            assertTrue(name, payload.isCrcValid)
+            assertEquals(name, "116", payload.currencyCode)
+            assertEquals(name, Money.ofDollars(vector.amount).takeIf { it.isPositive }?.toKhr()?.toString(), payload.amount)
+        }
+    }
+
+    @Test
+    fun amountsRoundLikeWebCents() {
+        // Expected strings are (Math.round(amount * 100) / 100).toFixed(2) in JavaScript
+        val expected = mapOf(
+            12.5 to "12.50",
+            0.1 + 0.2 to "0.30",
+            1.005 to "1.00",
+            0.015 to "0.02",
+            0.045 to "0.05",
+            2.675 to "2.68",
+            1.235 to "1.24",
+            9.999 to "10.00",
+            1234.5 to "1234.50"
+        )
+        for ((amount, text) in expected) {
+            assertEquals("$amount", text, Money.ofDollars(amount).toPlainString())
+        }
+    }
+
+    @Test
+    fun parseKhqrReadsBackEveryVector() {
+        for ((name, vector) in vectors) {
+            val payload = KhqrUtil.parseKhqr(vector.expected)!!
+
+            assertTrue(name, payload.isCrcValid)
+            assertEquals(name, "840", payload.currencyCode)
+            assertEquals(name, vector.merchantName, payload.merchantName)
+            assertEquals(name, vector.billNumber?.takeIf { it.isNotEmpty() }, payload.billNumber)
+            assertEquals(name, Money.ofDollars(vector.amount).takeIf { it.isPositive }?.toPlainString(), payload.amount)
+        }
+    }
+
+    @Test
+    fun tamperedPayloadFailsCrc() {
+        val original = vectors.getValue("dynamic with bill number").expected
+        val tampered = original.replace("540512.50", "540512.60")
+
+        assertFalse(KhqrUtil.parseKhqr(tampered)!!.isCrcValid)
+    }
+
+    @Test
+    fun parseTlvSplitsNestedTemplates() {
+        val payload = KhqrUtil.parseKhqr(vectors.getValue("dynamic with bill number").expected)!!
+
+        assertEquals(mapOf("00" to ACCOUNT), KhqrUtil.parseTlv(payload.tags.getValue("29")))
+        assertEquals(
+            mapOf("01" to "CAFE12345678", "02" to "078211599", "03" to "MY SHOP"),
+            KhqrUtil.parseTlv(payload.tags.getValue("62"))
+        )
+    }
+
+    /**
+     * The builder the template replaced: string concatenation per tag,
+     * String.format for the amount and a bit-by-bit CRC
+     */
+    private fun legacyKhqr(amount: Double, billNumber: String?): String {
+        fun tlv(tag: String, value: String) = tag + value.length.toString().padStart(2, '0') + value
+        var khqr = tlv("00", "01") + tlv("01", "12") + tlv("29", tlv("00", ACCOUNT)) + tlv("52", "5999") + tlv("53", "840")
+        khqr += tlv("54", String.format(Locale.ROOT, "%.2f", amount))
+        khqr += tlv("58", "KH") + tlv("59", "MY SHOP") + tlv("60", "PHNOM PENH")
+        var tag62 = ""
+        if (billNumber != null) tag62 += tlv("01", billNumber)
+        tag62 += tlv("02", "078211599") + tlv("03", "MY SHOP")
+        khqr += tlv("62", tag62) + "6304"
+        var crc = 0xFFFF
+        for (char in khqr) {
+            crc = crc xor (char.code shl 8)
+            repeat(8) { crc = if ((crc and 0x8000) != 0) (crc shl 1) xor 0x1021 else crc shl 1 }
+        }
+        return khqr + (crc and 0xFFFF).toString(16).uppercase().padStart(4, '0')
+    }
+
+    @Test
+    fun templateAllocatesOnlyThePayload() {
+        val vector = vectors.getValue("dynamic with bill number")
+        val template = KhqrUtil.KhqrTemplate(merchantName = "MY SHOP", accountNumber = ACCOUNT)
+        val amount = Money.ofDollars(vector.amount)
+        assertEquals(vector.expected, legacyKhqr(vector.amount, vector.billNumber))
+
+        val built = Allocations.perCall { template.build(amount, vector.billNumber) }
+        val legacy = Allocations.perCall { legacyKhqr(vector.amount, vector.billNumber) }
+
+        // The amount text, the joined payload and the returned String, nothing per tag
+        val length = vector.expected.length
+        assertTrue("build allocated $built B for a $length char payload", built < 3 * length + 256)
+        assertTrue("build $built B vs legacy $legacy B per payload", built * 4 < legacy)
+    }
+
+    @Test
+    fun parseTlvRejectsBrokenLengths() {
+        assertNull(KhqrUtil.parseTlv("0005abc"))
+        assertNull(KhqrUtil.parseTlv("00"))
+        assertNull(KhqrUtil.parseTlv("00xx"))
+        assertEquals(emptyMap<String, String>(), KhqrUtil.parseTlv(""))
+    }
+
+    private companion object {
+        const val ACCOUNT = "lavin_mara@bkrt"
+    }
+}
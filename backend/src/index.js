@@ -39,7 +39,16 @@ app.use(cors({
 app.use(morgan('dev'));
 app.use(express.json());
 app.use(express.urlencoded({ extended: true }));
-app.use('/uploads', express.static(path.join(__dirname, '../uploads')));
+// Content-hashed uploads (product-<hash>[-w<width>].webp) never change and are cached for a year.
+// Older uploads keep their original names and may be replaced, so they get the default revalidation.
+const HASHED_UPLOAD = /^product-[0-9a-f]{16}(-w\d+)?\.webp$/;
+app.use('/uploads', express.static(path.join(__dirname, '../uploads'), {
+  setHeaders: (res, filePath) => {
+    if (HASHED_UPLOAD.test(path.basename(filePath))) {
+      res.setHeader('Cache-Control', 'public, max-age=31536000, immutable');
+    }
+  }
+}));
 
 // Health check
 app.get('/api/health', (req, res) => {
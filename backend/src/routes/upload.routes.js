@@ -2,16 +2,20 @@ const router = require('express').Router();
 const multer = require('multer');
 const path = require('path');
 const fs = require('fs');
+const crypto = require('crypto');
+const sharp = require('sharp');
 const cloudinary = require('cloudinary').v2;
-const { CloudinaryStorage } = require('multer-storage-cloudinary');
 const { authenticate } = require('../middleware/auth.middleware');
 
+// Widths rendered for every upload, shared with the web and Android clients
+const IMAGE_WIDTHS = [128, 256, 512];
+
 // Configure Cloudinary if credentials exist
 const isCloudinaryConfigured = process.env.CLOUDINARY_CLOUD_NAME &&
     process.env.CLOUDINARY_API_KEY &&
     process.env.CLOUDINARY_API_SECRET;
 
-let storage;
+const uploadDir = 'uploads';
 
 if (isCloudinaryConfigured) {
     cloudinary.config({
@@ -19,35 +23,18 @@ if (isCloudinaryConfigured) {
         api_key: process.env.CLOUDINARY_API_KEY,
         api_secret: process.env.CLOUDINARY_API_SECRET
     });
-
-    storage = new CloudinaryStorage({
-        cloudinary: cloudinary,
-        params: {
-            folder: 'myshop-products',
-            format: async (req, file) => 'webp', // auto convert to webp for optimization
-            public_id: (req, file) => 'product-' + Date.now()
-        },
-    });
     console.log('☁️  Cloudinary storage initialized for product images.');
 } else {
     // Fallback to local storage (not persistent in regular cloud hosting)
-    const uploadDir = 'uploads';
     if (!fs.existsSync(uploadDir)) {
         fs.mkdirSync(uploadDir);
     }
-
-    storage = multer.diskStorage({
-        destination: (req, file, cb) => {
-            cb(null, uploadDir);
-        },
-        filename: (req, file, cb) => {
-            const uniqueSuffix = Date.now() + '-' + Math.round(Math.random() * 1e9);
-            cb(null, 'product-' + uniqueSuffix + path.extname(file.originalname));
-        }
-    });
     console.log('📁 Local disk storage initialized for product images (Fallback).');
 }
 
+// Keep the file in memory: its name is derived from the content, which is only known after upload
+const storage = multer.memoryStorage();
+
 // File filter to only allow images
 const fileFilter = (req, file, cb) => {
     if (file.mimetype.startsWith('image/')) {
@@ -63,10 +50,63 @@ const upload = multer({
     limits: { fileSize: 5 * 1024 * 1024 } // 5MB limit
 });
 
+/**
+ * Content hash used as the file name, so identical uploads share one URL
+ * and every URL can be cached as immutable
+ */
+const hashContent = (buffer) => crypto.createHash('sha256').update(buffer).digest('hex').slice(0, 16);
+
+/**
+ * Upload to Cloudinary with the thumbnail widths rendered eagerly
+ */
+const uploadToCloudinary = (buffer, publicId) => new Promise((resolve, reject) => {
+    const stream = cloudinary.uploader.upload_stream({
+        folder: 'myshop-products',
+        public_id: publicId,
+        overwrite: false,
+        format: 'webp', // auto convert to webp for optimization
+        eager: IMAGE_WIDTHS.map(width => ({ width, crop: 'limit', quality: 'auto' })),
+        eager_async: false
+    }, (error, result) => (error ? reject(error) : resolve(result)));
+    stream.end(buffer);
+});
+
+/**
+ * Store the original and each width as WebP on local disk
+ */
+const saveLocally = async (buffer, baseName) => {
+    const source = sharp(buffer).rotate(); // apply EXIF orientation before resizing
+
+    await Promise.all(IMAGE_WIDTHS.map(width =>
+        source.clone()
+            .resize({ width, withoutEnlargement: true })
+            .webp({ quality: 80 })
+            .toFile(path.join(uploadDir, `${baseName}-w${width}.webp`))
+    ));
+
+    // Original last: its presence marks the whole set as complete
+    await source.clone()
+        .webp({ quality: 82 })
+        .toFile(path.join(uploadDir, `${baseName}.webp`));
+};
+
+/**
+ * URLs of the rendered widths keyed by width
+ */
+const buildVariants = (imageUrl) => {
+    const variants = {};
+    for (const width of IMAGE_WIDTHS) {
+        variants[width] = isCloudinaryConfigured
+            ? imageUrl.replace('/image/upload/', `/image/upload/c_limit,q_auto,w_${width}/`)
+            : imageUrl.replace(/\.webp$/, `-w${width}.webp`);
+    }
+    return variants;
+};
+
 /**
  * Handle image upload
  */
-router.post('/', authenticate, upload.single('image'), (req, res) => {
+router.post('/', authenticate, upload.single('image'), async (req, res) => {
     try {
         if (!req.file) {
             return res.status(400).json({
@@ -75,13 +115,21 @@ router.post('/', authenticate, upload.single('image'), (req, res) => {
             });
         }
 
-        // If using Cloudinary, req.file.path is the full URL
-        // If using local storage, we construct it
-        let imageUrl = req.file.path;
+        const baseName = 'product-' + hashContent(req.file.buffer);
+        let imageUrl;
+        let filename;
 
-        if (!isCloudinaryConfigured) {
-            const baseUrl = `${req.protocol}://${req.get('host')}`;
-            imageUrl = `/uploads/${req.file.filename}`;
+        if (isCloudinaryConfigured) {
+            const result = await uploadToCloudinary(req.file.buffer, baseName);
+            imageUrl = result.secure_url;
+            filename = result.public_id;
+        } else {
+            // Same content, same name: skip the work if this image is already stored
+            filename = `${baseName}.webp`;
+            if (!fs.existsSync(path.join(uploadDir, filename))) {
+                await saveLocally(req.file.buffer, baseName);
+            }
+            imageUrl = `/uploads/${filename}`;
         }
 
         res.json({
@@ -89,8 +137,9 @@ router.post('/', authenticate, upload.single('image'), (req, res) => {
             message: 'Image uploaded successfully',
             data: {
                 url: imageUrl,
-                filename: req.file.filename || req.file.public_id,
-                is_cloud: isCloudinaryConfigured
+                variants: buildVariants(imageUrl),
+                filename,
+                is_cloud: !!isCloudinaryConfigured
             }
         });
     } catch (error) {
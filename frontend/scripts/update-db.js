@@ -42,6 +42,17 @@ async function run() {
     `;
 
         await client.query(query);
+
+        console.log('Adding idempotency key to cafe_orders...');
+        await client.query(`
+      ALTER TABLE cafe_orders ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(64);
+      CREATE UNIQUE INDEX IF NOT EXISTS cafe_orders_idempotency_key ON cafe_orders (idempotency_key);
+    `);
+
+        console.log('Indexing the order change feed...');
+        await client.query(`
+      CREATE INDEX IF NOT EXISTS cafe_orders_updated_at_id ON cafe_orders (updated_at, id);
+    `);
         console.log('Success! Columns added.');
     } catch (err) {
         console.error('Error executing SQL:', err.message);
@@ -3,6 +3,7 @@
 import { useState, useEffect, useRef } from 'react';
 import toast from 'react-hot-toast';
 import { FiCoffee, FiClock, FiCheck, FiLoader, FiVolume2, FiVolumeX, FiRefreshCw } from 'react-icons/fi';
+import { openStaffOrderStream } from '@/lib/staffOrderStream';
 
 interface OrderItem {
     name: string;
@@ -72,9 +73,13 @@ export default function KitchenDisplayPage() {
 
     useEffect(() => {
         fetchOrders();
-        // Auto-refresh every 5 seconds
-        const interval = setInterval(fetchOrders, 5000);
-        return () => clearInterval(interval);
+        // Refresh when the server pushes a status change, with a slow safety net
+        const closeEvents = openStaffOrderStream(fetchOrders);
+        const interval = setInterval(fetchOrders, 30000);
+        return () => {
+            closeEvents();
+            clearInterval(interval);
+        };
     }, [soundEnabled]);
 
     const updateStatus = async (orderId: string, newStatus: string) => {
@@ -5,6 +5,7 @@ import toast from 'react-hot-toast';
 import { FiSearch, FiTrash2, FiMinus, FiPlus, FiDollarSign, FiCheck, FiX, FiLoader, FiPrinter, FiCoffee, FiShoppingCart } from 'react-icons/fi';
 import { useReactToPrint } from 'react-to-print';
 import { KHQR } from '@/components/KHQR';
+import { ImageVariants, imageSrcSet, pickImageVariant } from '@/lib/imageVariants';
 
 interface MenuCategory {
     id: string;
@@ -25,6 +26,7 @@ interface MenuItem {
     has_sugar_option: boolean;
     has_ice_option: boolean;
     image_url?: string;
+    image_variants?: ImageVariants | null;
     category?: MenuCategory;
 }
 
@@ -94,7 +96,7 @@ const COFFEE_IMAGES: Record<string, string> = {
 };
 
 const getItemImage = (item: MenuItem): string => {
-    if (item.image_url) return item.image_url;
+    if (item.image_url) return pickImageVariant(item.image_url, item.image_variants, 256);
     const name = item.name.toLowerCase();
     for (const [key, url] of Object.entries(COFFEE_IMAGES)) {
         if (name.includes(key)) return url;
@@ -388,9 +390,16 @@ export default function CafePOSPage() {
                                 <div className="aspect-square bg-gradient-to-br from-amber-100 to-orange-100 dark:from-amber-900/30 dark:to-orange-900/30 rounded-lg mb-3 flex items-center justify-center overflow-hidden">
                                     <img
                                         src={getItemImage(item)}
+                                        srcSet={imageSrcSet(item.image_variants)}
+                                        sizes="(min-width: 1024px) 200px, 45vw"
+                                        loading="lazy"
                                         alt={item.name}
                                         className="w-full h-full object-cover rounded-lg"
-                                        onError={(e) => { (e.target as HTMLImageElement).src = COFFEE_IMAGES.default }}
+                                        onError={(e) => {
+                                            const img = e.target as HTMLImageElement;
+                                            img.srcset = '';
+                                            img.src = COFFEE_IMAGES.default;
+                                        }}
                                     />
                                 </div>
                                 <h3 className="font-semibold text-gray-800 dark:text-white truncate">{item.name}</h3>
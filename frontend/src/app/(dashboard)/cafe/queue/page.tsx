@@ -2,6 +2,7 @@
 
 import { useState, useEffect } from 'react';
 import { FiCoffee, FiClock, FiCheckCircle } from 'react-icons/fi';
+import { openStaffOrderStream } from '@/lib/staffOrderStream';
 
 interface QueueOrder {
     id: string;
@@ -30,12 +31,14 @@ export default function CafeQueuePage() {
 
     useEffect(() => {
         fetchOrders();
-        // Refresh every 3 seconds
-        const orderInterval = setInterval(fetchOrders, 3000);
+        // Refresh when the server pushes a status change, with a slow safety net
+        const closeEvents = openStaffOrderStream(fetchOrders);
+        const orderInterval = setInterval(fetchOrders, 30000);
         // Update time every second
         const timeInterval = setInterval(() => setCurrentTime(new Date()), 1000);
 
         return () => {
+            closeEvents();
             clearInterval(orderInterval);
             clearInterval(timeInterval);
         };
@@ -1,9 +1,15 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { models } from '@/lib/db';
+import { getMenuVersion, buildMenuEtag, isNotModified, notModifiedResponse, menuCacheHeaders } from '@/lib/menuVersion';
 
 // GET /api/cafe/menu-categories - List all categories
-export async function GET() {
+export async function GET(request: NextRequest) {
     try {
+        const etag = buildMenuEtag('menu-categories', await getMenuVersion(), request);
+        if (isNotModified(request, etag)) {
+            return notModifiedResponse(etag);
+        }
+
         const categories = await models.MenuCategory.findAll({
             where: { is_active: true },
             order: [['display_order', 'ASC'], ['name', 'ASC']],
@@ -18,6 +24,8 @@ export async function GET() {
         return NextResponse.json({
             success: true,
             data: categories
+        }, {
+            headers: menuCacheHeaders(etag)
         });
     } catch (error: any) {
         console.error('Error fetching menu categories:', error);
@@ -1,6 +1,7 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { models } from '@/lib/db';
 import { Op } from 'sequelize';
+import { getMenuVersion, buildMenuEtag, isNotModified, notModifiedResponse, menuCacheHeaders } from '@/lib/menuVersion';
 
 // GET /api/cafe/menu-items - List all menu items
 export async function GET(request: NextRequest) {
@@ -9,6 +10,12 @@ export async function GET(request: NextRequest) {
         const category_id = searchParams.get('category_id');
         const search = searchParams.get('search');
         const available_only = searchParams.get('available_only') === 'true';
+        const include_recipes = searchParams.get('include_recipes') === 'true';
+
+        const etag = buildMenuEtag('menu-items', await getMenuVersion(), request);
+        if (isNotModified(request, etag)) {
+            return notModifiedResponse(etag);
+        }
 
         const where: any = { is_active: true };
 
@@ -27,30 +34,38 @@ export async function GET(request: NextRequest) {
             ];
         }
 
+        const include: any[] = [
+            {
+                model: models.MenuCategory,
+                as: 'category',
+                attributes: ['id', 'name', 'name_kh', 'icon']
+            }
+        ];
+
+        // Recipes are only needed by stock management, keep them out of the public menu payload
+        if (include_recipes) {
+            include.push({
+                model: models.Recipe,
+                as: 'recipes',
+                include: [{
+                    model: models.Ingredient,
+                    as: 'ingredient',
+                    attributes: ['id', 'name', 'unit', 'quantity']
+                }]
+            });
+        }
+
         const items = await models.MenuItem.findAll({
             where,
-            include: [
-                {
-                    model: models.MenuCategory,
-                    as: 'category',
-                    attributes: ['id', 'name', 'name_kh', 'icon']
-                },
-                {
-                    model: models.Recipe,
-                    as: 'recipes',
-                    include: [{
-                        model: models.Ingredient,
-                        as: 'ingredient',
-                        attributes: ['id', 'name', 'unit', 'quantity']
-                    }]
-                }
-            ],
+            include,
             order: [['name', 'ASC']]
         });
 
         return NextResponse.json({
             success: true,
             data: items
+        }, {
+            headers: menuCacheHeaders(etag)
         });
     } catch (error: any) {
         console.error('Error fetching menu items:', error);
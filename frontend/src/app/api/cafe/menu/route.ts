@@ -0,0 +1,79 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { models } from '@/lib/db';
+import {
+    getMenuVersion, buildMenuEtag, isNotModified, notModifiedResponse, menuCacheHeaders,
+    CUSTOMER_MENU_CACHE, CUSTOMER_MENU_VERSION_MAX_AGE_MS
+} from '@/lib/menuVersion';
+import { imageVariants } from '@/lib/imageVariants';
+
+// Only the fields the customer apps render
+const CATEGORY_ATTRIBUTES = ['id', 'name', 'name_kh', 'icon', 'display_order', 'is_active'];
+const ITEM_ATTRIBUTES = [
+    'id', 'category_id', 'name', 'name_kh', 'description', 'image_url',
+    'base_price', 'has_sizes', 'price_medium', 'price_large', 'is_available'
+];
+
+const toPrice = (value: any) => (value === null || value === undefined ? null : Number(value));
+
+// GET /api/cafe/menu - Active categories with their available items nested
+export async function GET(request: NextRequest) {
+    try {
+        const etag = buildMenuEtag('menu', await getMenuVersion(CUSTOMER_MENU_VERSION_MAX_AGE_MS), request);
+        if (isNotModified(request, etag)) {
+            return notModifiedResponse(etag, CUSTOMER_MENU_CACHE);
+        }
+
+        const [categories, items]: any[] = await Promise.all([
+            models.MenuCategory.findAll({
+                where: { is_active: true },
+                attributes: CATEGORY_ATTRIBUTES,
+                order: [['display_order', 'ASC'], ['name', 'ASC']],
+                raw: true
+            }),
+            models.MenuItem.findAll({
+                where: { is_active: true, is_available: true },
+                attributes: ITEM_ATTRIBUTES,
+                order: [['name', 'ASC']],
+                raw: true
+            })
+        ]);
+
+        // Group in one pass instead of a nested include, which would repeat category columns per item
+        const itemsByCategory = new Map<string, any[]>();
+        for (const item of items) {
+            const bucket = itemsByCategory.get(item.category_id);
+            const trimmed = {
+                ...item,
+                base_price: toPrice(item.base_price),
+                price_medium: toPrice(item.price_medium),
+                price_large: toPrice(item.price_large),
+                image_variants: imageVariants(item.image_url)
+            };
+            if (bucket) {
+                bucket.push(trimmed);
+            } else {
+                itemsByCategory.set(item.category_id, [trimmed]);
+            }
+        }
+
+        const data = categories
+            .map((category: any) => ({
+                ...category,
+                items: itemsByCategory.get(category.id) || []
+            }))
+            .filter((category: any) => category.items.length > 0);
+
+        return NextResponse.json({
+            success: true,
+            data
+        }, {
+            headers: menuCacheHeaders(etag, CUSTOMER_MENU_CACHE)
+        });
+    } catch (error: any) {
+        console.error('Error fetching menu:', error);
+        return NextResponse.json(
+            { success: false, message: error.message },
+            { status: 500 }
+        );
+    }
+}
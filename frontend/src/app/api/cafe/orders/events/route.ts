@@ -0,0 +1,102 @@
+import { NextRequest } from 'next/server';
+import { models } from '@/lib/db';
+import { verifyCustomerAuth, verifyStreamTicket, unauthorizedResponse } from '@/lib/auth';
+import { ORDER_EVENTS_SCOPE, OrderEvent, eventIdOf, findOrderEventsAround, parseEventCursor, subscribeOrderEvents } from '@/lib/orderEvents';
+
+export const dynamic = 'force-dynamic';
+export const maxDuration = 60;
+
+const HEARTBEAT_MS = 15000;
+// Close before the platform limit, clients reconnect with Last-Event-ID
+const STREAM_LIFETIME_MS = 55000;
+
+const formatEvent = (event: OrderEvent) => {
+    const { customer_id, ...payload } = event;
+    return `id: ${eventIdOf(event)}\nevent: order\ndata: ${JSON.stringify(payload)}\n\n`;
+};
+
+// GET /api/cafe/orders/events - Server-sent stream of order status transitions
+// Pass ?phone= (customer auth required) to receive only that customer's orders.
+// The unscoped stream of every order is for staff screens, opened with a ?ticket=
+// from POST /api/cafe/orders/events/ticket since EventSource cannot set headers.
+export async function GET(request: NextRequest) {
+    const { searchParams } = new URL(request.url);
+    const phone = searchParams.get('phone');
+
+    let customerId: string | null = null;
+    if (phone) {
+        const auth = await verifyCustomerAuth(request);
+        if (!auth) {
+            return unauthorizedResponse();
+        }
+
+        const customer = await models.CafeCustomer.findOne({
+            where: { phone },
+            attributes: ['id']
+        });
+        customerId = customer ? (customer as any).id : null;
+    } else {
+        const auth = await verifyStreamTicket(request, ORDER_EVENTS_SCOPE);
+        if (!auth) {
+            return unauthorizedResponse();
+        }
+    }
+
+    const accepts = (event: OrderEvent) => !phone || event.customer_id === customerId;
+
+    // Resume behind the last event the client saw, so rows that committed late are not lost
+    const since = parseEventCursor(request.headers.get('Last-Event-ID') || searchParams.get('since'));
+    const missed = since
+        ? (await findOrderEventsAround(since)).filter(accepts)
+        : [];
+
+    const encoder = new TextEncoder();
+    let cleanup = () => { };
+
+    const stream = new ReadableStream({
+        start(controller) {
+            const send = (chunk: string) => {
+                try {
+                    controller.enqueue(encoder.encode(chunk));
+                } catch {
+                    cleanup();
+                }
+            };
+
+            send('retry: 2000\n\n');
+            missed.forEach(event => send(formatEvent(event)));
+
+            const unsubscribe = subscribeOrderEvents(event => {
+                if (accepts(event)) send(formatEvent(event));
+            });
+            const heartbeat = setInterval(() => send(': ping\n\n'), HEARTBEAT_MS);
+            const lifetime = setTimeout(() => {
+                cleanup();
+                try {
+                    controller.close();
+                } catch {
+                    // Already closed by the client
+                }
+            }, STREAM_LIFETIME_MS);
+
+            cleanup = () => {
+                unsubscribe();
+                clearInterval(heartbeat);
+                clearTimeout(lifetime);
+            };
+
+            request.signal.addEventListener('abort', () => cleanup());
+        },
+        cancel() {
+            cleanup();
+        }
+    });
+
+    return new Response(stream, {
+        headers: {
+            'Content-Type': 'text/event-stream',
+            'Cache-Control': 'no-cache, no-transform',
+            'Connection': 'keep-alive'
+        }
+    });
+}
@@ -0,0 +1,22 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { issueStreamTicket, verifyAuth, unauthorizedResponse } from '@/lib/auth';
+import { ORDER_EVENTS_SCOPE } from '@/lib/orderEvents';
+
+export const dynamic = 'force-dynamic';
+
+// POST /api/cafe/orders/events/ticket - Short-lived ticket that opens the staff order stream
+// (staff auth required). Pass it as ?ticket= to /api/cafe/orders/events.
+export async function POST(request: NextRequest) {
+    const auth = await verifyAuth(request);
+    if (!auth) {
+        return unauthorizedResponse();
+    }
+
+    const { ticket, expiresIn } = issueStreamTicket(auth, ORDER_EVENTS_SCOPE);
+    return NextResponse.json({
+        success: true,
+        data: { ticket, expiresIn }
+    }, {
+        headers: { 'Cache-Control': 'no-store' }
+    });
+}
@@ -1,6 +1,7 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { models, getSequelize } from '@/lib/db';
 import { Op } from 'sequelize';
+import { loadMenuItems, unitPriceFor, deductIngredients } from '@/lib/orderItems';
 
 // GET /api/cafe/orders - List orders
 export async function GET(request: NextRequest) {
@@ -85,12 +86,14 @@ export async function POST(request: NextRequest) {
             );
         }
 
-        // Calculate totals
+        // Price every line from one query for all of the order's menu items
+        const menuItems = await loadMenuItems(items.map((item: any) => item.menu_item_id), transaction);
+
         let subtotal = 0;
         const orderItems = [];
 
         for (const item of items) {
-            const menuItem = await models.MenuItem.findByPk(item.menu_item_id, { transaction });
+            const menuItem = menuItems.get(item.menu_item_id);
             if (!menuItem) {
                 await transaction.rollback();
                 return NextResponse.json(
@@ -100,16 +103,7 @@ export async function POST(request: NextRequest) {
             }
 
             // Get price based on size
-            let unitPrice = parseFloat((menuItem as any).base_price);
-            if (item.size === 'medium' && (menuItem as any).price_medium) {
-                unitPrice = parseFloat((menuItem as any).price_medium);
-            } else if (item.size === 'medium') {
-                unitPrice += 0.50;
-            } else if (item.size === 'large' && (menuItem as any).price_large) {
-                unitPrice = parseFloat((menuItem as any).price_large);
-            } else if (item.size === 'large') {
-                unitPrice += 1.00;
-            }
+            const unitPrice = unitPriceFor(menuItem, item.size);
 
             const itemTotal = unitPrice * item.quantity - (item.discount || 0);
             subtotal += itemTotal;
@@ -124,37 +118,16 @@ export async function POST(request: NextRequest) {
                 total: itemTotal,
                 customizations: item.customizations || {}
             });
+        }
 
-            // Deduct ingredients based on recipe
-            const recipes = await models.Recipe.findAll({
-                where: {
-                    menu_item_id: item.menu_item_id,
-                    size: item.size || 'regular'
-                },
-                transaction
-            });
-
-            for (const recipe of recipes) {
-                const ingredient = await models.Ingredient.findByPk(
-                    (recipe as any).ingredient_id,
-                    { transaction }
-                );
-                if (ingredient) {
-                    const recipeQty = parseFloat((recipe as any).quantity) * item.quantity;
-                    const currentQty = parseFloat((ingredient as any).quantity);
-                    const newQty = currentQty - recipeQty;
-
-                    if (newQty < 0) {
-                        await transaction.rollback();
-                        return NextResponse.json(
-                            { success: false, message: `Insufficient stock for ${(ingredient as any).name}` },
-                            { status: 400 }
-                        );
-                    }
-
-                    await ingredient.update({ quantity: newQty }, { transaction });
-                }
-            }
+        // Deduct ingredients for the whole order in one statement
+        const shortIngredient = await deductIngredients(orderItems, transaction);
+        if (shortIngredient) {
+            await transaction.rollback();
+            return NextResponse.json(
+                { success: false, message: `Insufficient stock for ${shortIngredient}` },
+                { status: 400 }
+            );
         }
 
         const totalUsd = subtotal;
@@ -193,12 +166,10 @@ export async function POST(request: NextRequest) {
         }, { transaction });
 
         // Create order items
-        for (const item of orderItems) {
-            await (models.CafeOrderItem as any).create({
-                order_id: (order as any).id,
-                ...item
-            }, { transaction });
-        }
+        await (models.CafeOrderItem as any).bulkCreate(
+            orderItems.map(item => ({ order_id: (order as any).id, ...item })),
+            { transaction, validate: true }
+        );
 
         await transaction.commit();
 
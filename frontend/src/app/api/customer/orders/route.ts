@@ -2,19 +2,81 @@ import { NextRequest, NextResponse } from 'next/server';
 import { models, getSequelize } from '@/lib/db';
 import { sendOrderNotification, isTelegramConfigured } from '@/lib/telegram';
 import { verifyCustomerAuth, unauthorizedResponse } from '@/lib/auth';
+import { loadMenuItems, unitPriceFor, deductIngredients } from '@/lib/orderItems';
+import { CustomerAuth, findOrderByIdempotencyKey, isSameOrderRequest } from '@/lib/orderIdempotency';
+
+const ORDER_PLACED_MESSAGE = 'Order placed successfully! Please proceed to the counter for payment.';
+
+// Fits the idempotency_key column; clients send a UUID
+const MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+function idempotencyKeyReusedResponse() {
+    return NextResponse.json(
+        { success: false, message: 'Idempotency-Key was already used for a different order' },
+        { status: 422 }
+    );
+}
+
+// The earlier order for a repeated key, 422 if the key came with a different body, or null for a new key
+async function replayIdempotentRequest(idempotencyKey: string, auth: CustomerAuth, body: any) {
+    const existingOrder = await findOrderByIdempotencyKey(idempotencyKey, auth);
+    if (!existingOrder) {
+        return null;
+    }
+    return isSameOrderRequest(existingOrder, body)
+        ? replayedOrderResponse(existingOrder)
+        : idempotencyKeyReusedResponse();
+}
+
+function replayedOrderResponse(order: any) {
+    return NextResponse.json({
+        success: true,
+        data: {
+            order,
+            message: ORDER_PLACED_MESSAGE
+        }
+    }, { status: 200, headers: { 'Idempotent-Replayed': 'true' } });
+}
 
 // POST /api/customer/orders - Create customer order (Auth required)
+// An Idempotency-Key header makes retries safe: a repeated key returns the
+// order created by the first request instead of placing a second one, as
+// long as the same customer sends the same order with it
 export async function POST(request: NextRequest) {
     const auth = await verifyCustomerAuth(request);
     if (!auth) {
         return unauthorizedResponse();
     }
 
+    const idempotencyKey = request.headers.get('idempotency-key')?.trim() || null;
+    if (idempotencyKey && idempotencyKey.length > MAX_IDEMPOTENCY_KEY_LENGTH) {
+        return NextResponse.json(
+            { success: false, message: 'Idempotency-Key is too long' },
+            { status: 400 }
+        );
+    }
+
+    let body: any;
+    try {
+        body = await request.json();
+    } catch {
+        return NextResponse.json(
+            { success: false, message: 'Invalid request body' },
+            { status: 400 }
+        );
+    }
+
+    if (idempotencyKey) {
+        const replay = await replayIdempotentRequest(idempotencyKey, auth, body);
+        if (replay) {
+            return replay;
+        }
+    }
+
     const sequelize = getSequelize();
     const transaction = await sequelize.transaction();
 
     try {
-        const body = await request.json();
         const {
             customer_phone,
             customer_name,
@@ -66,12 +128,14 @@ export async function POST(request: NextRequest) {
             await (customer as any).update({ name: customer_name }, { transaction });
         }
 
-        // Calculate totals
+        // Price every line from one query for all of the order's menu items
+        const menuItems = await loadMenuItems(items.map((item: any) => item.menu_item_id), transaction);
+
         let subtotal = 0;
         const orderItems = [];
 
         for (const item of items) {
-            const menuItem = await models.MenuItem.findByPk(item.menu_item_id, { transaction });
+            const menuItem = menuItems.get(item.menu_item_id);
             if (!menuItem) {
                 await transaction.rollback();
                 return NextResponse.json(
@@ -90,19 +154,8 @@ export async function POST(request: NextRequest) {
             }
 
             // Get price based on size
-            let unitPrice = Number((menuItem as any).base_price);
-            if (isNaN(unitPrice)) unitPrice = 0;
-
             const size = (item.size || 'regular').toLowerCase();
-            if (size === 'medium' && (menuItem as any).price_medium) {
-                unitPrice = Number((menuItem as any).price_medium);
-            } else if (size === 'medium') {
-                unitPrice += 0.50;
-            } else if (size === 'large' && (menuItem as any).price_large) {
-                unitPrice = Number((menuItem as any).price_large);
-            } else if (size === 'large') {
-                unitPrice += 1.00;
-            }
+            const unitPrice = unitPriceFor(menuItem, size);
 
             const quantity = Number(item.quantity) > 0 ? Math.floor(Number(item.quantity)) : 1;
             const itemTotal = unitPrice * quantity;
@@ -118,38 +171,16 @@ export async function POST(request: NextRequest) {
                 total: itemTotal,
                 customizations: item.customizations || {}
             });
+        }
 
-            // Deduct ingredients based on recipe
-            const recipes = await models.Recipe.findAll({
-                where: {
-                    menu_item_id: item.menu_item_id,
-                    size: size
-                },
-                transaction
-            });
-
-            for (const recipe of recipes) {
-                const ingredient = await models.Ingredient.findByPk(
-                    (recipe as any).ingredient_id,
-                    { transaction }
-                );
-                if (ingredient) {
-                    const recipeQtyPerItem = parseFloat((recipe as any).quantity) || 0;
-                    const totalRecipeQty = recipeQtyPerItem * quantity;
-                    const currentQty = parseFloat((ingredient as any).quantity) || 0;
-                    const newQty = currentQty - totalRecipeQty;
-
-                    if (newQty < 0) {
-                        await transaction.rollback();
-                        return NextResponse.json(
-                            { success: false, message: `Insufficient stock for ${(ingredient as any).name}` },
-                            { status: 400 }
-                        );
-                    }
-
-                    await (ingredient as any).update({ quantity: newQty }, { transaction });
-                }
-            }
+        // Deduct ingredients for the whole order in one statement
+        const shortIngredient = await deductIngredients(orderItems, transaction);
+        if (shortIngredient) {
+            await transaction.rollback();
+            return NextResponse.json(
+                { success: false, message: `Insufficient stock for ${shortIngredient}` },
+                { status: 400 }
+            );
         }
 
         const totalUsd = subtotal;
@@ -167,16 +198,15 @@ export async function POST(request: NextRequest) {
             change_khr: 0,
             exchange_rate,
             payment_method: 'cash',
-            status: 'pending'
+            status: 'pending',
+            idempotency_key: idempotencyKey
         }, { transaction });
 
         // Create order items
-        for (const item of orderItems) {
-            await models.CafeOrderItem.create({
-                order_id: (order as any).id,
-                ...item
-            }, { transaction });
-        }
+        await models.CafeOrderItem.bulkCreate(
+            orderItems.map(item => ({ order_id: (order as any).id, ...item })),
+            { transaction, validate: true }
+        );
 
         // Update customer stats
         await (customer as any).update({
@@ -214,12 +244,20 @@ export async function POST(request: NextRequest) {
             success: true,
             data: {
                 order: createdOrder,
-                message: 'Order placed successfully! Please proceed to the counter for payment.'
+                message: ORDER_PLACED_MESSAGE
             }
         }, { status: 201 });
 
     } catch (error: any) {
         await transaction.rollback();
+
+        // A concurrent retry with the same key committed first: answer with its order.
+        // A key taken by another customer's order is never shown to this one.
+        if (idempotencyKey && error.name === 'SequelizeUniqueConstraintError' && error.fields?.idempotency_key !== undefined) {
+            const replay = await replayIdempotentRequest(idempotencyKey, auth, body);
+            return replay || idempotencyKeyReusedResponse();
+        }
+
         console.error('Error creating customer order:', error);
         return NextResponse.json(
             { success: false, message: error.message },
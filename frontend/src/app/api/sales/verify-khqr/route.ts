@@ -1,61 +1,6 @@
 import { NextRequest, NextResponse } from 'next/server';
-
-const BAKONG_API_URL = process.env.BAKONG_API_URL || 'https://api-bakong.nbc.gov.kh/v1';
-const BAKONG_TOKEN = process.env.BAKONG_TOKEN || '';
-
-async function checkTransaction(type: string, value: string) {
-    const payload: Record<string, string> = {};
-    payload[type === 'externalRef' ? 'externalRef' : type] = value;
-
-    const endpointMap: Record<string, string> = {
-        'md5': '/check_transaction_by_md5',
-        'externalRef': '/check_transaction_by_external_ref',
-        'hash': '/check_transaction_by_hash'
-    };
-
-    const endpoint = endpointMap[type];
-    const url = `${BAKONG_API_URL}${endpoint}`;
-
-    console.log(`[KHQR Verify] Calling ${url} with type=${type}`);
-
-    const headers: Record<string, string> = {
-        'Content-Type': 'application/json',
-        'Accept': 'application/json',
-    };
-
-    if (BAKONG_TOKEN) {
-        headers['Authorization'] = `Bearer ${BAKONG_TOKEN}`;
-    }
-
-    const response = await fetch(url, {
-        method: 'POST',
-        headers,
-        body: JSON.stringify(payload),
-    });
-
-    if (!response.ok) {
-        const text = await response.text();
-        console.error(`[KHQR Verify] HTTP ${response.status}: ${text.substring(0, 200)}`);
-        throw new Error(`Bakong API returned HTTP ${response.status}`);
-    }
-
-    const data = await response.json();
-    console.log(`[KHQR Verify] Response:`, JSON.stringify(data));
-
-    if (data && (data.responseCode === 0 || data.responseCode === '0')) {
-        return {
-            success: true,
-            data: data.data || data
-        };
-    } else {
-        return {
-            success: false,
-            message: data.responseMessage || 'Transaction check failed',
-            code: data.responseCode,
-            errorCode: data.errorCode
-        };
-    }
-}
+import { checkTransaction } from '@/lib/bakong';
+import { getConfirmedPayment } from '@/lib/paymentWatcher';
 
 export async function POST(req: NextRequest) {
     try {
@@ -68,6 +13,16 @@ export async function POST(req: NextRequest) {
             );
         }
 
+        // Answer from the watcher's cache when this md5 is already known to be paid
+        const confirmed = md5 && !externalRef ? getConfirmedPayment(md5) : null;
+        if (confirmed) {
+            return NextResponse.json({
+                success: true,
+                message: 'Payment verified successfully',
+                data: confirmed
+            });
+        }
+
         let result;
         if (externalRef) {
             result = await checkTransaction('externalRef', externalRef);
@@ -0,0 +1,61 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { canWatchPayment, waitForPayment } from '@/lib/paymentWatcher';
+
+export const dynamic = 'force-dynamic';
+export const maxDuration = 30;
+
+const DEFAULT_TIMEOUT_MS = 25000;
+const MAX_TIMEOUT_MS = 25000;
+const MD5_PATTERN = /^[0-9a-f]{32}$/i;
+
+// GET /api/sales/verify-khqr/wait?md5= - Long-poll until the KHQR payment lands
+// Bakong is polled once per md5 on the server no matter how many clients wait.
+// The md5 of a KHQR payload cannot be guessed, so knowing it is what lets a client
+// wait, like POST /api/sales/verify-khqr; a session that expires mid-payment still
+// sees it confirmed. The watcher caps how many payments it polls at once.
+export async function GET(req: NextRequest) {
+    try {
+        const { searchParams } = new URL(req.url);
+        const md5 = searchParams.get('md5');
+        const timeout = Math.min(
+            parseInt(searchParams.get('timeout') || '') || DEFAULT_TIMEOUT_MS,
+            MAX_TIMEOUT_MS
+        );
+
+        if (!md5 || !MD5_PATTERN.test(md5)) {
+            return NextResponse.json(
+                { success: false, message: 'MD5 hash is required' },
+                { status: 400 }
+            );
+        }
+
+        if (!canWatchPayment(md5)) {
+            return NextResponse.json(
+                { success: false, message: 'Too many payments pending, try again shortly' },
+                { status: 429, headers: { 'Retry-After': '5' } }
+            );
+        }
+
+        const data = await waitForPayment(md5, timeout);
+
+        if (data) {
+            return NextResponse.json({
+                success: true,
+                message: 'Payment verified successfully',
+                data
+            });
+        }
+
+        return NextResponse.json({
+            success: false,
+            pending: true,
+            message: 'Payment not received yet'
+        });
+    } catch (error: any) {
+        console.error('[KHQR Wait] Error:', error.message);
+        return NextResponse.json(
+            { success: false, message: error.message },
+            { status: 500 }
+        );
+    }
+}
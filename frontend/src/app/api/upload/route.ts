@@ -1,6 +1,8 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { verifyAuth, unauthorizedResponse } from '@/lib/auth';
 import { v2 as cloudinary } from 'cloudinary';
+import { createHash } from 'crypto';
+import { IMAGE_WIDTHS, cloudinaryVariant, imageVariants } from '@/lib/imageVariants';
 
 export async function POST(req: NextRequest) {
     try {
@@ -57,14 +59,22 @@ export async function POST(req: NextRequest) {
         const mimeType = file.type || 'image/jpeg';
         const dataUri = `data:${mimeType};base64,${base64}`;
 
-        // Upload to Cloudinary using base64
+        // Name the asset after its content: the same image maps to the same immutable URL,
+        // and re-uploading it reuses the stored copy instead of creating a new one
+        const contentHash = createHash('sha256').update(buffer).digest('hex').slice(0, 16);
+
+        // Upload to Cloudinary using base64, rendering the thumbnail widths up front
         const uploadResult = await cloudinary.uploader.upload(dataUri, {
             folder: 'myshop-products',
+            public_id: `product-${contentHash}`,
+            overwrite: false,
             format: 'webp',
             transformation: [
                 { width: 800, height: 800, crop: 'limit' },
                 { quality: 'auto' }
-            ]
+            ],
+            eager: IMAGE_WIDTHS.map(cloudinaryVariant),
+            eager_async: false
         });
 
         return NextResponse.json({
@@ -72,6 +82,7 @@ export async function POST(req: NextRequest) {
             message: 'Image uploaded successfully',
             data: {
                 url: uploadResult.secure_url,
+                variants: imageVariants(uploadResult.secure_url),
                 filename: uploadResult.public_id,
                 is_cloud: true
             }
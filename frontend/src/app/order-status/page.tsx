@@ -65,7 +65,8 @@ export default function PublicOrderStatusPage() {
 
     useEffect(() => {
         fetchOrders();
-        const orderInterval = setInterval(fetchOrders, 3000);
+        // The live order stream is staff-only, so the public board polls the queue
+        const orderInterval = setInterval(fetchOrders, 5000);
         const timeInterval = setInterval(() => setCurrentTime(new Date()), 1000);
         return () => {
             clearInterval(orderInterval);
@@ -2,6 +2,7 @@
 
 import { FiPlus } from 'react-icons/fi';
 import { formatPrice } from '@/lib/khqr.util';
+import { ImageVariants, imageSrcSet, pickImageVariant } from '@/lib/imageVariants';
 
 interface CoffeeItem {
     id: string;
@@ -9,6 +10,7 @@ interface CoffeeItem {
     name_kh?: string;
     description?: string;
     image_url?: string;
+    image_variants?: ImageVariants | null;
     base_price: number;
     has_sizes?: boolean;
     is_available?: boolean;
@@ -29,7 +31,10 @@ export const CoffeeCard = ({ item, onClick, onAdd }: CoffeeCardProps) => {
             {/* Image Section */}
             <div className="aspect-[4/5] relative overflow-hidden">
                 <img
-                    src={item.image_url}
+                    src={item.image_url && pickImageVariant(item.image_url, item.image_variants, 512)}
+                    srcSet={imageSrcSet(item.image_variants)}
+                    sizes="(min-width: 1024px) 25vw, 50vw"
+                    loading="lazy"
                     alt={item.name}
                     className="w-full h-full object-cover group-hover:scale-110 transition-transform duration-700 font-serif"
                 />
@@ -39,6 +39,47 @@ export async function verifyAuth(req: NextRequest): Promise<AuthContext | null>
     }
 }
 
+/**
+ * EventSource cannot set headers, so staff screens trade their token for a
+ * ticket to pass as ?ticket=. A ticket only opens streams of its scope and
+ * expires within a minute, so one leaked through a URL or a log is worth
+ * little. It carries no userId claim and never passes verifyAuth.
+ */
+const STREAM_TICKET_TTL_SECONDS = 60;
+
+export function issueStreamTicket(auth: AuthContext, scope: string): { ticket: string; expiresIn: number } {
+    const ticket = jwt.sign({ sub: auth.userId, scope }, JWT_SECRET, { expiresIn: STREAM_TICKET_TTL_SECONDS });
+    return { ticket, expiresIn: STREAM_TICKET_TTL_SECONDS };
+}
+
+export async function verifyStreamTicket(req: NextRequest, scope: string): Promise<AuthContext | null> {
+    try {
+        const ticket = req.nextUrl.searchParams.get('ticket');
+        if (!ticket) {
+            return null;
+        }
+
+        const decoded = jwt.verify(ticket, JWT_SECRET) as any;
+
+        if (!decoded || decoded.scope !== scope || !decoded.sub) {
+            return null;
+        }
+
+        const user = await models.User.findByPk(decoded.sub);
+        if (!user || !user.is_active) {
+            return null;
+        }
+
+        return {
+            user,
+            userId: user.id,
+            role: user.role
+        };
+    } catch (error) {
+        return null;
+    }
+}
+
 export async function verifyCustomerAuth(req: NextRequest): Promise<{ customerId: string; phone: string } | null> {
     try {
         const authHeader = req.headers.get('Authorization');
@@ -73,6 +73,12 @@ export default (sequelize: Sequelize) => {
             type: DataTypes.STRING(100),
             allowNull: true,
         },
+        // Client-generated key per checkout, a retried submission returns the order it already created
+        idempotency_key: {
+            type: DataTypes.STRING(64),
+            allowNull: true,
+            unique: true
+        },
         status: {
             type: DataTypes.ENUM('pending', 'preparing', 'ready', 'completed', 'voided'),
             defaultValue: 'completed'
@@ -84,7 +90,9 @@ export default (sequelize: Sequelize) => {
             { fields: ['order_number'] },
             { fields: ['cashier_id'] },
             { fields: ['created_at'] },
-            { fields: ['status'] }
+            { fields: ['status'] },
+            // Change feed of order events, read in (updated_at, id) order
+            { fields: ['updated_at', 'id'] }
         ]
     });
 
@@ -1,5 +1,6 @@
 // @ts-nocheck
 import { DataTypes, Sequelize } from 'sequelize';
+import { imageVariants } from '@/lib/imageVariants';
 
 export default (sequelize: Sequelize) => {
     const MenuItem = sequelize.define('MenuItem', {
@@ -28,6 +29,13 @@ export default (sequelize: Sequelize) => {
             type: DataTypes.STRING(500),
             allowNull: true
         },
+        // Resized copies of image_url, derived from its content-hashed name
+        image_variants: {
+            type: DataTypes.VIRTUAL,
+            get() {
+                return imageVariants(this.getDataValue('image_url'));
+            }
+        },
         // Base price for Regular size (USD)
         base_price: {
             type: DataTypes.DECIMAL(10, 2),
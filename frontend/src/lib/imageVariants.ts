@@ -0,0 +1,73 @@
+/**
+ * Resized variants of uploaded product images.
+ *
+ * Uploads are stored under content-hashed names, so every variant URL is
+ * immutable and can be cached forever by browsers, the CDN and the app.
+ */
+
+export const IMAGE_WIDTHS = [128, 256, 512] as const;
+
+export type ImageVariants = Record<string, string>;
+
+const CLOUDINARY_UPLOAD = '/image/upload/';
+
+// Local uploads from the Express backend keep pre-rendered widths next to the original
+const LOCAL_HASHED_UPLOAD = /^(.*\/uploads\/product-[0-9a-f]{16})\.webp$/;
+
+/**
+ * Cloudinary transformation for one width. Matches the eager derivatives
+ * requested at upload time, so delivery never renders on the fly.
+ */
+export const cloudinaryVariant = (width: number) => ({ width, crop: 'limit', quality: 'auto' });
+
+const cloudinaryVariantSegment = (width: number) => `c_limit,q_auto,w_${width}`;
+
+/**
+ * URL of the variant no wider than `width`, or null when the image is not
+ * one of our uploads (e.g. an external placeholder).
+ */
+export const imageVariantUrl = (url: string, width: number): string | null => {
+    if (url.includes('res.cloudinary.com') && url.includes(CLOUDINARY_UPLOAD)) {
+        return url.replace(CLOUDINARY_UPLOAD, `${CLOUDINARY_UPLOAD}${cloudinaryVariantSegment(width)}/`);
+    }
+
+    const local = url.match(LOCAL_HASHED_UPLOAD);
+    if (local) {
+        return `${local[1]}-w${width}.webp`;
+    }
+
+    return null;
+};
+
+/**
+ * All variants of an image keyed by width, e.g. { "128": "...", "256": "..." }
+ */
+export const imageVariants = (url?: string | null): ImageVariants | null => {
+    if (!url) return null;
+
+    const variants: ImageVariants = {};
+    for (const width of IMAGE_WIDTHS) {
+        const variant = imageVariantUrl(url, width);
+        if (!variant) return null;
+        variants[width] = variant;
+    }
+    return variants;
+};
+
+/**
+ * Smallest variant at least `width` wide, falling back to the original
+ */
+export const pickImageVariant = (url: string, variants: ImageVariants | null | undefined, width: number): string => {
+    if (!variants) return url;
+    const match = IMAGE_WIDTHS.find(w => w >= width);
+    return (match && variants[match]) || url;
+};
+
+/**
+ * srcSet attribute listing every variant, so the browser picks the width
+ * that fits the rendered size and pixel density
+ */
+export const imageSrcSet = (variants: ImageVariants | null | undefined): string | undefined => {
+    if (!variants) return undefined;
+    return IMAGE_WIDTHS.map(width => `${variants[width]} ${width}w`).join(', ');
+};
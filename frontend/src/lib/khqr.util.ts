@@ -67,9 +67,9 @@ export const generateKHQR = ({
     // Tag 53: Transaction Currency (840 for USD, 116 for KHR)
     khqr += buildTag('53', currency === 'USD' ? '840' : '116');
 
-    // Tag 54: Transaction Amount
+    // Tag 54: Transaction Amount, whole riel for KHR
     if (isDynamic) {
-        khqr += buildTag('54', amount.toFixed(2));
+        khqr += buildTag('54', currency === 'KHR' ? Math.round(amount).toString() : (Math.round(amount * 100) / 100).toFixed(2));
     }
 
     // Tag 58: Country Code
@@ -0,0 +1,117 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { createHash } from 'crypto';
+import { fn, col } from 'sequelize';
+import { models } from './db';
+
+// Admin screens reload menu-items and menu-categories right after edits, so those always revalidate
+export const MENU_REVALIDATE = 'no-cache';
+// The customer menu may be reused from the device cache for a minute without asking again
+export const CUSTOMER_MENU_CACHE = 'public, max-age=60, stale-while-revalidate=300';
+// Devices may already be a minute behind, so the customer menu reuses its version as long
+export const CUSTOMER_MENU_VERSION_MAX_AGE_MS = 60 * 1000;
+
+const toMillis = (value: any) => (value ? new Date(value).getTime() : 0);
+
+// Version last read by this server instance. Writes through the models on this
+// instance drop it at once; other instances pick a change up within the max age.
+let cachedVersion: { value: Promise<string>; at: number } | null = null;
+let watchingWrites = false;
+
+// Drops the cached version on every write to categories or items, and again once
+// the write's transaction commits so a read in between cannot keep the old one
+function watchMenuWrites() {
+    if (watchingWrites) return;
+    watchingWrites = true;
+
+    const invalidate = (...args: any[]) => {
+        cachedVersion = null;
+        const transaction = args[args.length - 1]?.transaction;
+        transaction?.afterCommit(() => {
+            cachedVersion = null;
+        });
+    };
+    for (const model of [models.MenuCategory, models.MenuItem]) {
+        for (const hook of ['afterSave', 'afterDestroy', 'afterBulkCreate', 'afterBulkUpdate', 'afterBulkDestroy']) {
+            model.addHook(hook, 'menuVersion', invalidate);
+        }
+    }
+}
+
+/**
+ * Fingerprint of the whole menu, reused when read less than maxAgeMs ago.
+ * The default of 0 always reads it, for admin screens that expect their own
+ * edits to show at once.
+ */
+export function getMenuVersion(maxAgeMs = 0): Promise<string> {
+    watchMenuWrites();
+
+    if (cachedVersion && Date.now() - cachedVersion.at < maxAgeMs) {
+        return cachedVersion.value;
+    }
+
+    const entry = { value: readMenuVersion(), at: Date.now() };
+    cachedVersion = entry;
+    entry.value.catch(() => {
+        if (cachedVersion === entry) cachedVersion = null;
+    });
+    return entry.value;
+}
+
+/**
+ * Cheap fingerprint of the whole menu: row count and latest update time of
+ * categories and items. Any create, edit or soft delete moves it forward.
+ */
+async function readMenuVersion(): Promise<string> {
+    const aggregate = {
+        attributes: [
+            [fn('COUNT', col('id')), 'count'],
+            [fn('MAX', col('updated_at')), 'updated']
+        ],
+        raw: true
+    } as any;
+
+    const [categories, items]: any[] = await Promise.all([
+        models.MenuCategory.findOne(aggregate),
+        models.MenuItem.findOne(aggregate)
+    ]);
+
+    return [
+        categories?.count || 0, toMillis(categories?.updated),
+        items?.count || 0, toMillis(items?.updated)
+    ].join('.');
+}
+
+/**
+ * Builds a weak ETag for a menu route. The query string is part of the tag
+ * so filtered and unfiltered responses never share a validator.
+ */
+export function buildMenuEtag(scope: string, version: string, request: NextRequest): string {
+    const query = new URL(request.url).searchParams.toString();
+    const queryHash = query
+        ? '-' + createHash('md5').update(query).digest('hex').substring(0, 8)
+        : '';
+    return `W/"${scope}-${version}${queryHash}"`;
+}
+
+export function isNotModified(request: NextRequest, etag: string): boolean {
+    const header = request.headers.get('If-None-Match');
+    if (!header) return false;
+    return header.split(',').some(tag => {
+        const value = tag.trim();
+        return value === '*' || value === etag;
+    });
+}
+
+export function menuCacheHeaders(etag: string, cacheControl = MENU_REVALIDATE): Record<string, string> {
+    return {
+        ETag: etag,
+        'Cache-Control': cacheControl
+    };
+}
+
+export function notModifiedResponse(etag: string, cacheControl = MENU_REVALIDATE): NextResponse {
+    return new NextResponse(null, {
+        status: 304,
+        headers: menuCacheHeaders(etag, cacheControl)
+    });
+}
@@ -0,0 +1,171 @@
+import { Op } from 'sequelize';
+import { models } from './db';
+
+export interface OrderEvent {
+    id: string;
+    order_number: string;
+    status: string;
+    customer_id: string | null;
+    updated_at: string;
+}
+
+type Listener = (event: OrderEvent) => void;
+
+// Scope of the stream tickets that open the unscoped staff stream
+export const ORDER_EVENTS_SCOPE = 'order-events';
+
+const POLL_INTERVAL_MS = 2000;
+const MAX_EVENTS_PER_POLL = 100;
+// updated_at is stamped when a statement runs, not when its transaction commits,
+// so a slower transaction can commit a row behind a cursor that has moved past it.
+// Reads go back this far behind the cursor, well beyond any order transaction.
+const COMMIT_WINDOW_MS = 10000;
+
+// One watcher per server instance fans changes out to every open stream,
+// so the database sees a single light query no matter how many clients listen.
+const listeners = new Set<Listener>();
+let timer: ReturnType<typeof setInterval> | null = null;
+let cursor: OrderEventCursor | null = null;
+// Order id -> updated_at ms already delivered inside the window, so re-read rows are sent once
+const delivered = new Map<string, number>();
+let polling = false;
+
+/**
+ * Position in the change feed. Several orders can share one updated_at
+ * millisecond, so the order id breaks ties and no row is skipped at a
+ * page boundary.
+ */
+export interface OrderEventCursor {
+    at: Date;
+    id: string | null;
+}
+
+// SSE id of an event, "<updated_at ms>_<order id>", so Last-Event-ID resumes at the exact row
+export const eventIdOf = (event: OrderEvent) => `${new Date(event.updated_at).getTime()}_${event.id}`;
+
+export function parseEventCursor(value: string | null): OrderEventCursor | null {
+    if (!value) return null;
+    const [millis, id] = value.split('_');
+    const at = Number(millis);
+    return at > 0 ? { at: new Date(at), id: id || null } : null;
+}
+
+/**
+ * Start of the commit window behind a cursor. Reading from here instead of the
+ * cursor picks up rows that committed late, at the cost of repeating events
+ * the reader may already have seen. Events carry the order's current status,
+ * so applying one twice is harmless.
+ */
+export function rewindEventCursor(since: OrderEventCursor): OrderEventCursor {
+    return { at: new Date(since.at.getTime() - COMMIT_WINDOW_MS), id: null };
+}
+
+const isAfter = (a: OrderEventCursor, b: OrderEventCursor) =>
+    a.at.getTime() > b.at.getTime() || (a.at.getTime() === b.at.getTime() && (a.id ?? '') > (b.id ?? ''));
+
+export async function findOrderEventsSince(since: OrderEventCursor, limit = MAX_EVENTS_PER_POLL): Promise<OrderEvent[]> {
+    const where = since.id
+        ? {
+            [Op.or]: [
+                { updatedAt: { [Op.gt]: since.at } },
+                { updatedAt: since.at, id: { [Op.gt]: since.id } }
+            ]
+        }
+        : { updatedAt: { [Op.gt]: since.at } };
+
+    const rows: any[] = await models.CafeOrder.findAll({
+        where,
+        attributes: ['id', 'order_number', 'status', 'customer_id', 'updatedAt'],
+        order: [['updatedAt', 'ASC'], ['id', 'ASC']],
+        limit,
+        raw: true
+    });
+
+    return rows.map(row => ({
+        id: row.id,
+        order_number: row.order_number,
+        status: row.status,
+        customer_id: row.customer_id || null,
+        updated_at: new Date(row.updatedAt).toISOString()
+    }));
+}
+
+/**
+ * Every change from the commit window behind a cursor onward, paging through
+ * all of it so repeated rows never crowd out new ones.
+ */
+export async function findOrderEventsAround(since: OrderEventCursor): Promise<OrderEvent[]> {
+    const all: OrderEvent[] = [];
+    let page = rewindEventCursor(since);
+    for (; ;) {
+        const events = await findOrderEventsSince(page);
+        all.push(...events);
+        if (events.length < MAX_EVENTS_PER_POLL) return all;
+        const last = events[events.length - 1];
+        page = { at: new Date(last.updated_at), id: last.id };
+    }
+}
+
+async function readUndelivered(since: OrderEventCursor): Promise<OrderEvent[]> {
+    const fresh = (await findOrderEventsAround(since)).filter(event => {
+        const at = new Date(event.updated_at).getTime();
+        if (delivered.get(event.id) === at) return false;
+        delivered.set(event.id, at);
+        return true;
+    });
+
+    // Forget deliveries that fell out of the window
+    const horizon = rewindEventCursor(since).at.getTime();
+    delivered.forEach((at, id) => {
+        if (at < horizon) delivered.delete(id);
+    });
+    return fresh;
+}
+
+async function poll() {
+    if (polling) return;
+    polling = true;
+
+    try {
+        if (!cursor) {
+            // Start from the latest change so new subscribers only see fresh transitions
+            const latest: any = await models.CafeOrder.findOne({
+                attributes: ['id', 'updatedAt'],
+                order: [['updatedAt', 'DESC'], ['id', 'DESC']],
+                raw: true
+            });
+            cursor = latest ? { at: new Date(latest.updatedAt), id: latest.id } : { at: new Date(0), id: null };
+            delivered.clear();
+            await readUndelivered(cursor);
+            return;
+        }
+
+        for (const event of await readUndelivered(cursor)) {
+            const position = { at: new Date(event.updated_at), id: event.id };
+            if (isAfter(position, cursor)) cursor = position;
+            listeners.forEach(listener => listener(event));
+        }
+    } catch (error) {
+        console.error('Order event poll failed:', error);
+    } finally {
+        polling = false;
+    }
+}
+
+export function subscribeOrderEvents(listener: Listener): () => void {
+    listeners.add(listener);
+
+    if (!timer) {
+        cursor = null;
+        poll();
+        timer = setInterval(poll, POLL_INTERVAL_MS);
+    }
+
+    return () => {
+        listeners.delete(listener);
+        if (listeners.size === 0 && timer) {
+            clearInterval(timer);
+            timer = null;
+        }
+    };
+}
@@ -0,0 +1,99 @@
+import { after, before, describe, it } from 'node:test';
+import assert from 'node:assert/strict';
+
+/**
+ * Runs the idempotent replay lookup against a real Postgres, the only way
+ * to catch SQL that Sequelize generates but Postgres rejects. The schema is
+ * dropped and recreated, so it needs a database of its own:
+ *
+ *   TEST_DATABASE_URL=postgres://localhost/myshop_test npm test
+ */
+const TEST_DATABASE_URL = process.env.TEST_DATABASE_URL;
+
+describe('idempotent order replay', { skip: !TEST_DATABASE_URL && 'TEST_DATABASE_URL is not set' }, () => {
+    let db: typeof import('./db');
+    let idempotency: typeof import('./orderIdempotency');
+    let alice: any;
+    let bob: any;
+    let menuItem: any;
+
+    const KEY = '6f1c2f4e-0d4b-4a47-9d0e-7c7f6c1f2a10';
+
+    before(async () => {
+        process.env.DATABASE_URL = TEST_DATABASE_URL;
+        db = await import('./db');
+        idempotency = await import('./orderIdempotency');
+        const { models, getSequelize } = db;
+
+        await getSequelize().sync({ force: true });
+
+        const category = await models.MenuCategory.create({ name: 'Coffee' });
+        menuItem = await models.MenuItem.create({ category_id: category.id, name: 'Latte', base_price: 2.5 });
+        alice = await models.CafeCustomer.create({ phone: '012000001', name: 'Alice' });
+        bob = await models.CafeCustomer.create({ phone: '012000002', name: 'Bob' });
+
+        const order = await models.CafeOrder.create({
+            customer_id: alice.id,
+            order_type: 'dine_in',
+            table_number: 4,
+            subtotal_usd: 6,
+            total_usd: 6,
+            exchange_rate: 4100,
+            status: 'pending',
+            idempotency_key: KEY
+        });
+        await models.CafeOrderItem.create({
+            order_id: order.id,
+            menu_item_id: menuItem.id,
+            name: 'Latte',
+            size: 'medium',
+            quantity: 2,
+            unit_price: 3,
+            total: 6
+        });
+    });
+
+    after(async () => {
+        await db?.getSequelize().close();
+    });
+
+    const body = () => ({
+        customer_phone: '012000001',
+        order_type: 'dine_in',
+        table_number: 4,
+        items: [{ menu_item_id: menuItem.id, size: 'Medium', quantity: 2 }]
+    });
+
+    it('replays the order for the customer who placed it', async () => {
+        const order: any = await idempotency.findOrderByIdempotencyKey(KEY, { customerId: alice.id, phone: alice.phone });
+
+        assert.ok(order);
+        assert.equal(order.customer.phone, alice.phone);
+        assert.equal(order.items.length, 1);
+        assert.equal(idempotency.isSameOrderRequest(order, body()), true);
+    });
+
+    it('finds the order through the phone of the token as well', async () => {
+        const order = await idempotency.findOrderByIdempotencyKey(KEY, {
+            customerId: '00000000-0000-4000-8000-000000000000',
+            phone: alice.phone
+        });
+
+        assert.ok(order);
+    });
+
+    it('never shows the order to another customer', async () => {
+        const order = await idempotency.findOrderByIdempotencyKey(KEY, { customerId: bob.id, phone: bob.phone });
+
+        assert.equal(order, null);
+    });
+
+    it('tells a different body apart from a replay', async () => {
+        const order: any = await idempotency.findOrderByIdempotencyKey(KEY, { customerId: alice.id, phone: alice.phone });
+
+        assert.equal(idempotency.isSameOrderRequest(order, { ...body(), items: [{ ...body().items[0], quantity: 3 }] }), false);
+        assert.equal(idempotency.isSameOrderRequest(order, { ...body(), order_type: 'takeaway' }), false);
+        assert.equal(idempotency.isSameOrderRequest(order, { ...body(), table_number: 5 }), false);
+        assert.equal(idempotency.isSameOrderRequest(order, { ...body(), customer_phone: bob.phone }), false);
+    });
+});
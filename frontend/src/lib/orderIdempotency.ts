@@ -0,0 +1,63 @@
+import { Op } from 'sequelize';
+import { models } from './db';
+
+/**
+ * Lookup and comparison behind the Idempotency-Key header of customer
+ * orders. A key only ever replays an order of the customer who sends it,
+ * and only for the same order.
+ */
+
+export type CustomerAuth = { customerId: string; phone: string };
+
+/**
+ * Order the same customer created earlier under this idempotency key, with
+ * the same includes as a new one. The customer scope is resolved first and
+ * applied as plain customer ids: a filter on the included customer would
+ * land inside the LIMIT subquery Sequelize builds for the items include,
+ * where that table is not joined.
+ */
+export async function findOrderByIdempotencyKey(idempotencyKey: string, auth: CustomerAuth) {
+    const customers = await models.CafeCustomer.findAll({
+        where: { [Op.or]: [{ id: auth.customerId }, { phone: auth.phone }] },
+        attributes: ['id'],
+        raw: true
+    });
+    if (customers.length === 0) {
+        return null;
+    }
+
+    return models.CafeOrder.findOne({
+        where: {
+            idempotency_key: idempotencyKey,
+            customer_id: { [Op.in]: customers.map((customer: any) => customer.id) }
+        },
+        include: [
+            { model: models.CafeOrderItem, as: 'items' },
+            { model: models.CafeCustomer, as: 'customer', attributes: ['id', 'name', 'phone'] }
+        ]
+    });
+}
+
+// Lines as the order stores them: normalized size and quantity, in a fixed order
+function requestLines(items: any[]): string[] {
+    return items.map((item: any) => {
+        const size = (item.size || 'regular').toLowerCase();
+        const quantity = Number(item.quantity) > 0 ? Math.floor(Number(item.quantity)) : 1;
+        return `${item.menu_item_id}:${size}:${quantity}`;
+    }).sort();
+}
+
+/**
+ * Whether a replayed request asks for the order that was created under its key
+ */
+export function isSameOrderRequest(order: any, body: any): boolean {
+    const { customer_phone, items, order_type = 'takeaway', table_number } = body;
+    if (!Array.isArray(items)) {
+        return false;
+    }
+    const tableNumber = order_type === 'dine_in' ? table_number : null;
+    return order.customer?.phone === customer_phone
+        && order.order_type === order_type
+        && String(order.table_number ?? '') === String(tableNumber ?? '')
+        && requestLines(order.items || []).join(',') === requestLines(items).join(',');
+}
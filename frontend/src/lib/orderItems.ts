@@ -0,0 +1,105 @@
+import { Op, Transaction } from 'sequelize';
+import { models, getSequelize } from './db';
+
+/**
+ * Order creation helpers shared by the POS and customer order routes.
+ * Each step works on the whole order at once, so an order costs the same
+ * few round-trips inside its transaction however many lines it has.
+ */
+
+export interface OrderLine {
+    menu_item_id: string;
+    size: string;
+    quantity: number;
+}
+
+/**
+ * Menu items of an order keyed by id, loaded with one IN query
+ */
+export async function loadMenuItems(menuItemIds: string[], transaction: Transaction): Promise<Map<string, any>> {
+    const menuItems = await models.MenuItem.findAll({
+        where: { id: { [Op.in]: Array.from(new Set(menuItemIds)) } },
+        transaction
+    });
+    return new Map(menuItems.map((menuItem: any) => [menuItem.id, menuItem]));
+}
+
+/**
+ * Price of one unit in the given size. Sizes without their own price cost
+ * $0.50 (medium) or $1.00 (large) more than the base price.
+ */
+export function unitPriceFor(menuItem: any, size: string): number {
+    let unitPrice = Number(menuItem.base_price);
+    if (isNaN(unitPrice)) unitPrice = 0;
+
+    if (size === 'medium' && menuItem.price_medium) {
+        unitPrice = Number(menuItem.price_medium);
+    } else if (size === 'medium') {
+        unitPrice += 0.50;
+    } else if (size === 'large' && menuItem.price_large) {
+        unitPrice = Number(menuItem.price_large);
+    } else if (size === 'large') {
+        unitPrice += 1.00;
+    }
+    return unitPrice;
+}
+
+/**
+ * Deducts the recipe ingredients of every line in one UPDATE. Returns null
+ * when every deduction went through, or the name of an ingredient without
+ * enough stock, in which case the caller must roll back the transaction.
+ */
+export async function deductIngredients(lines: OrderLine[], transaction: Transaction): Promise<string | null> {
+    const recipes: any[] = await models.Recipe.findAll({
+        where: { menu_item_id: { [Op.in]: Array.from(new Set(lines.map(line => line.menu_item_id))) } },
+        attributes: ['menu_item_id', 'ingredient_id', 'size', 'quantity'],
+        raw: true,
+        transaction
+    });
+
+    const recipesByLine = new Map<string, any[]>();
+    for (const recipe of recipes) {
+        const key = `${recipe.menu_item_id}:${recipe.size}`;
+        recipesByLine.set(key, [...(recipesByLine.get(key) || []), recipe]);
+    }
+
+    // Total needed per ingredient across the whole order
+    const required = new Map<string, number>();
+    for (const line of lines) {
+        for (const recipe of recipesByLine.get(`${line.menu_item_id}:${line.size}`) || []) {
+            const amount = (parseFloat(recipe.quantity) || 0) * line.quantity;
+            required.set(recipe.ingredient_id, (required.get(recipe.ingredient_id) || 0) + amount);
+        }
+    }
+
+    if (required.size === 0) {
+        return null;
+    }
+
+    const ingredientIds = Array.from(required.keys());
+    const values = ingredientIds.map(() => '(CAST(? AS uuid), CAST(? AS numeric))').join(', ');
+    const replacements = ingredientIds.flatMap(id => [id, required.get(id)!.toFixed(2)]);
+
+    // Rows without enough stock are left untouched and missing from the result
+    const [updated]: any[] = await getSequelize().query(`
+        UPDATE ingredients AS ingredient
+        SET quantity = COALESCE(ingredient.quantity, 0) - deduction.amount, updated_at = NOW()
+        FROM (VALUES ${values}) AS deduction(id, amount)
+        WHERE ingredient.id = deduction.id
+          AND COALESCE(ingredient.quantity, 0) >= deduction.amount
+        RETURNING ingredient.id
+    `, { replacements, transaction });
+
+    if (updated.length === ingredientIds.length) {
+        return null;
+    }
+
+    // An ingredient deleted since the recipe was written is skipped, one short on stock fails the order
+    const updatedIds = new Set(updated.map((row: any) => row.id));
+    const shortIngredient: any = await models.Ingredient.findOne({
+        where: { id: { [Op.in]: ingredientIds.filter(id => !updatedIds.has(id)) } },
+        attributes: ['name'],
+        transaction
+    });
+    return shortIngredient ? shortIngredient.name : null;
+}
@@ -0,0 +1,113 @@
+import { checkTransaction } from './bakong';
+
+type Waiter = (data: any) => void;
+
+interface Watch {
+    waiters: Set<Waiter>;
+    delayMs: number;
+    lastWaiterAt: number;
+}
+
+const INITIAL_DELAY_MS = 1000;
+const MAX_DELAY_MS = 5000;
+const ERROR_DELAY_MS = 10000;
+// Keep watching briefly after the last waiter leaves so a reconnecting long-poll keeps its place
+const IDLE_GRACE_MS = 15000;
+const CONFIRMED_TTL_MS = 10 * 60 * 1000;
+// Waiting needs no sign-in, so the number of payments polled at once is capped
+const MAX_WATCHES = 200;
+
+// One Bakong poller per md5, shared by every client waiting on that payment.
+// Both maps live in this server instance only: with several instances each one
+// polls Bakong for the md5s its own clients wait on, and a confirmation cached
+// here is not seen by the others. That costs a few duplicate Bakong calls, never
+// a missed payment, since every instance still asks Bakong itself.
+const watches = new Map<string, Watch>();
+const confirmed = new Map<string, { data: any; at: number }>();
+
+export function getConfirmedPayment(md5: string): any | null {
+    const entry = confirmed.get(md5);
+    if (!entry) return null;
+    if (Date.now() - entry.at > CONFIRMED_TTL_MS) {
+        confirmed.delete(md5);
+        return null;
+    }
+    return entry.data;
+}
+
+function resolveWatch(md5: string, watch: Watch, data: any) {
+    confirmed.set(md5, { data, at: Date.now() });
+    watches.delete(md5);
+    watch.waiters.forEach(waiter => waiter(data));
+    watch.waiters.clear();
+
+    // Drop stale confirmations so the cache cannot grow without bound
+    confirmed.forEach((entry, key) => {
+        if (Date.now() - entry.at > CONFIRMED_TTL_MS) confirmed.delete(key);
+    });
+}
+
+async function tick(md5: string) {
+    const watch = watches.get(md5);
+    if (!watch) return;
+
+    if (watch.waiters.size === 0 && Date.now() - watch.lastWaiterAt > IDLE_GRACE_MS) {
+        watches.delete(md5);
+        return;
+    }
+
+    let nextDelay: number;
+    try {
+        const result = await checkTransaction('md5', md5);
+        if (result.success) {
+            resolveWatch(md5, watch, result.data);
+            return;
+        }
+        nextDelay = watch.delayMs;
+        watch.delayMs = Math.min(Math.round(watch.delayMs * 1.5), MAX_DELAY_MS);
+    } catch (error: any) {
+        console.error('[KHQR Watch] Check failed:', error.message);
+        nextDelay = ERROR_DELAY_MS;
+    }
+
+    setTimeout(() => tick(md5), nextDelay);
+}
+
+/**
+ * Whether a wait on md5 can be served now, either from a poller that already
+ * runs or from a free slot for a new one
+ */
+export function canWatchPayment(md5: string): boolean {
+    return watches.has(md5) || getConfirmedPayment(md5) !== null || watches.size < MAX_WATCHES;
+}
+
+/**
+ * Waits until the payment for md5 lands or timeoutMs passes.
+ * Resolves with the Bakong transaction data, or null on timeout.
+ */
+export function waitForPayment(md5: string, timeoutMs: number): Promise<any | null> {
+    const paid = getConfirmedPayment(md5);
+    if (paid) return Promise.resolve(paid);
+
+    let watch = watches.get(md5);
+    if (!watch) {
+        watch = { waiters: new Set(), delayMs: INITIAL_DELAY_MS, lastWaiterAt: Date.now() };
+        watches.set(md5, watch);
+        tick(md5);
+    }
+    const activeWatch = watch;
+
+    return new Promise(resolve => {
+        const waiter: Waiter = data => {
+            clearTimeout(timeout);
+            resolve(data);
+        };
+        const timeout = setTimeout(() => {
+            activeWatch.waiters.delete(waiter);
+            activeWatch.lastWaiterAt = Date.now();
+            resolve(null);
+        }, timeoutMs);
+
+        activeWatch.waiters.add(waiter);
+    });
+}
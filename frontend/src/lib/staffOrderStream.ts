@@ -0,0 +1,53 @@
+import api from './api';
+
+const RECONNECT_MS = 2000;
+
+/**
+ * Opens the staff stream of order events and keeps it open until the returned
+ * function is called. Every connection starts with a fresh stream ticket,
+ * since a ticket expires before the browser's own reconnect would reuse it,
+ * and resumes after the last event it received.
+ */
+export function openStaffOrderStream(onOrder: (event: MessageEvent) => void): () => void {
+    let source: EventSource | null = null;
+    let retry: ReturnType<typeof setTimeout> | null = null;
+    let lastEventId = '';
+    let closed = false;
+
+    const reconnect = () => {
+        source?.close();
+        source = null;
+        if (!closed && !retry) {
+            retry = setTimeout(() => {
+                retry = null;
+                connect();
+            }, RECONNECT_MS);
+        }
+    };
+
+    const connect = async () => {
+        try {
+            const res = await api.post('/cafe/orders/events/ticket');
+            if (closed) return;
+
+            const params = new URLSearchParams({ ticket: res.data.data.ticket });
+            if (lastEventId) params.set('since', lastEventId);
+            source = new EventSource(`/api/cafe/orders/events?${params}`);
+            source.addEventListener('order', event => {
+                lastEventId = (event as MessageEvent).lastEventId || lastEventId;
+                onOrder(event as MessageEvent);
+            });
+            source.onerror = reconnect;
+        } catch (error) {
+            reconnect();
+        }
+    };
+
+    connect();
+
+    return () => {
+        closed = true;
+        if (retry) clearTimeout(retry);
+        source?.close();
+    };
+}